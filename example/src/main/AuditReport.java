@@ -0,0 +1,53 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Every violation found by an audit, so a single run shows all the problems instead of just the first one.
+ */
+public final class AuditReport {
+
+    private final String name;
+    private final int setsAudited;
+    private final List<String> violations;
+
+    AuditReport(String name, int setsAudited, List<String> violations) {
+        this.name = name;
+        this.setsAudited = setsAudited;
+        this.violations = Collections.unmodifiableList(new ArrayList<>(violations));
+    }
+
+    public int getSetsAudited() {
+        return setsAudited;
+    }
+
+    public List<String> getViolations() {
+        return violations;
+    }
+
+    public boolean hasViolations() {
+        return !violations.isEmpty();
+    }
+
+    /**
+     * Blows up the pipeline, listing every violation, if there were any.
+     */
+    public void throwIfViolated() {
+        if (hasViolations()) {
+            throw new IllegalArgumentException(toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append(" audit: ").append(violations.size()).append(" violation(s) in ")
+          .append(setsAudited).append(" set(s)");
+        for (String violation : violations) {
+            sb.append("\n  ").append(violation);
+        }
+        return sb.toString();
+    }
+}
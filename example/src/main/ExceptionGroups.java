@@ -0,0 +1,57 @@
+package main;
+
+import models.HymnalDbKey;
+
+import java.util.*;
+
+/**
+ * Registry of exception groups, i.e. sets of {@link HymnalDbKey}s that are allowed to break the audit rules together.
+ *
+ * Keeps an inverted index from each key to the groups it's in, so finding the groups contained in a set only looks at
+ * the keys of that set, no matter how many groups are registered.
+ */
+final class ExceptionGroups {
+
+    private static final int[] NO_GROUPS = new int[0];
+
+    private final List<Set<HymnalDbKey>> groups = new ArrayList<>();
+    private final Map<HymnalDbKey, int[]> groupsByKey = new HashMap<>();
+
+    ExceptionGroups(Collection<? extends Set<HymnalDbKey>> groups) {
+        groups.forEach(this::register);
+    }
+
+    /**
+     * Registers a group. Groups are matched in the order they're registered.
+     */
+    void register(Set<HymnalDbKey> group) {
+        if (group.isEmpty()) {
+            throw new IllegalArgumentException("Exception group must not be empty");
+        }
+        int index = groups.size();
+        groups.add(Set.copyOf(group));
+        for (HymnalDbKey key : group) {
+            int[] indexes = groupsByKey.getOrDefault(key, NO_GROUPS);
+            indexes = Arrays.copyOf(indexes, indexes.length + 1);
+            indexes[indexes.length - 1] = index;
+            groupsByKey.put(key, indexes);
+        }
+    }
+
+    /**
+     * @return the first registered group that is entirely contained in the set, or null if there isn't one
+     */
+    Set<HymnalDbKey> findFirstIn(Set<HymnalDbKey> set) {
+        // A group is contained in the set once every one of its keys has been seen in the set.
+        Map<Integer, Integer> hits = new HashMap<>();
+        int first = Integer.MAX_VALUE;
+        for (HymnalDbKey key : set) {
+            for (int index : groupsByKey.getOrDefault(key, NO_GROUPS)) {
+                if (index < first && hits.merge(index, 1, Integer::sum) == groups.get(index).size()) {
+                    first = index;
+                }
+            }
+        }
+        return first == Integer.MAX_VALUE ? null : groups.get(first);
+    }
+}
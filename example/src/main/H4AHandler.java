@@ -2,12 +2,8 @@ package main;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.tylersuehr.sql.SQLiteLease;
 import models.*;
-import net.sourceforge.pinyin4j.PinyinHelper;
-import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
-import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
-import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
-import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
 import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
 import repositories.DatabaseClient;
 
@@ -23,8 +19,6 @@ import static main.Main.LOGGER;
  */
 public class H4AHandler {
 
-    private static final String H4A_DB_NAME = "h4a-piano";
-
     /**
      * Use a custom escape sequence, since Gson will auto-escape strings and screw everything up. Right before we save
      * the value, we will undo the custom escape character and replace it with the standard double-quote (").
@@ -35,6 +29,7 @@ public class H4AHandler {
     private final Map<HymnalDbKey, ConvertedHymn> hymnalDbHymns;
     private final HymnalDbLanguagesHandler hymnalDbLanguagesHandler;
     private final Map<H4aKey, ConvertedHymn> h4aHymns;
+    private final PinyinTransliterator transliterator;
 
     public static H4AHandler create(DatabaseClient h4aDbClient, Map<HymnalDbKey, ConvertedHymn> hymnalDbHymns,
                                     HymnalDbLanguagesHandler hymnalDbLanguagesHandler) throws SQLException, BadHanyuPinyinOutputFormatCombination {
@@ -58,6 +53,7 @@ public class H4AHandler {
         this.hymnalDbHymns = hymnalDbHymns;
         this.hymnalDbLanguagesHandler = hymnalDbLanguagesHandler;
         this.h4aHymns = new LinkedHashMap<>();
+        this.transliterator = PinyinTransliterator.getInstance();
     }
 
     public void handle() throws BadHanyuPinyinOutputFormatCombination, SQLException {
@@ -111,10 +107,34 @@ public class H4AHandler {
     }
 
     private void populate() throws BadHanyuPinyinOutputFormatCombination, SQLException {
-        ResultSet resultSet = h4aDbClient.getDb().rawQuery("SELECT * FROM hymns");
+        // The rowid is selected last, so it doesn't shift the positions of the other columns
+        ResultSet resultSet = h4aDbClient.getDb().rawQuery("SELECT *, rowid FROM hymns ORDER BY rowid");
         if (resultSet == null) {
             throw new IllegalArgumentException("h4a query returned null");
         }
+        int hymnRowIdColumn = resultSet.getMetaData().getColumnCount();
+        String idColumn = resultSet.getMetaData().getColumnName(1);
+
+        // Stream all stanzas once, in the same order as the hymns, and merge-join them with the hymns cursor. The
+        // lease has its own statement, so this doesn't close the hymns cursor.
+        try (SQLiteLease lease = h4aDbClient.getDb().lease()) {
+            if (lease == null) {
+                throw new IllegalArgumentException("h4a lease returned null");
+            }
+            ResultSet stanzas = lease.rawQuery(
+                    "SELECT stanza.*, hymns.rowid FROM hymns JOIN stanza ON stanza.parent_hymn = hymns.[" + idColumn + "]"
+                            + " ORDER BY hymns.rowid, stanza.n_order");
+            if (stanzas == null) {
+                throw new IllegalArgumentException("h4a stanzas query returned null");
+            }
+            populate(resultSet, hymnRowIdColumn, stanzas);
+        }
+    }
+
+    private void populate(ResultSet resultSet, int hymnRowIdColumn, ResultSet stanzas)
+            throws BadHanyuPinyinOutputFormatCombination, SQLException {
+        int stanzaHymnRowIdColumn = stanzas.getMetaData().getColumnCount();
+        boolean hasStanza = stanzas.next();
 
         while (resultSet.next()) {
             String id = resultSet.getString(1);
@@ -133,12 +153,8 @@ public class H4AHandler {
             String firstStanzaLine = resultSet.getString(5);
 
             List<Verse> lyrics = new ArrayList<>();
-            ResultSet stanzas = new DatabaseClient(H4A_DB_NAME, 111).getDb().rawQuery(
-                    "SELECT * FROM stanza WHERE parent_hymn='" + id + "' ORDER BY n_order");
-            if (stanzas == null) {
-                throw new IllegalArgumentException("h4a stanzas query returned null");
-            }
-            while (stanzas.next()) {
+            long hymnRowId = resultSet.getLong(hymnRowIdColumn);
+            for (; hasStanza && stanzas.getLong(stanzaHymnRowIdColumn) == hymnRowId; hasStanza = stanzas.next()) {
                 String stanzaNumber = stanzas.getString(2);
                 String text = stanzas.getString(3);
 
@@ -169,29 +185,7 @@ public class H4AHandler {
                 if (key.isTransliterable()) {
                     List<String> transliteratedLines = new ArrayList<>();
                     for (String line : verseContent) {
-                        StringBuilder transliteratedLine = new StringBuilder();
-                        char[] transliterableChars = line.toCharArray();
-                        for (char transliterableChar : transliterableChars) {
-                            HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
-                            format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
-                            format.setToneType(HanyuPinyinToneType.WITH_TONE_MARK);
-                            format.setVCharType(HanyuPinyinVCharType.WITH_U_UNICODE);
-                            String[] transliteratedArray
-                                    = PinyinHelper.toHanyuPinyinStringArray(transliterableChar, format);
-
-                            if (transliteratedArray == null) {
-                                transliteratedLine.append(transliterableChar);
-                                continue;
-                            }
-
-                            String transliterated = transliteratedArray[0];
-                            if (transliterated.contains("none")) {
-                                throw new IllegalArgumentException(
-                                        transliterableChar + " was not able to be transliterated");
-                            }
-                            transliteratedLine.append(transliterated);
-                        }
-                        transliteratedLines.add(transliteratedLine.toString());
+                        transliteratedLines.add(transliterator.transliterate(line));
                     }
                     verse.setTransliteration(transliteratedLines);
                 }
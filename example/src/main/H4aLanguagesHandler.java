@@ -16,7 +16,8 @@ public class H4aLanguagesHandler {
     }
 
     private final Map<H4aKey, ConvertedHymn> allHymns;
-    private final Set<Set<H4aKey>> allReferenceSets;
+    private final KeyDictionary<H4aKey> keys;
+    private final ReferenceSets<H4aKey, H4aKey> allReferenceSets;
 
     public static H4aLanguagesHandler create(Map<H4aKey, ConvertedHymn> allHymns) {
         return new H4aLanguagesHandler(allHymns);
@@ -24,13 +25,15 @@ public class H4aLanguagesHandler {
 
     private H4aLanguagesHandler(Map<H4aKey, ConvertedHymn> allHymns) {
         this.allHymns = allHymns;
-        this.allReferenceSets = new LinkedHashSet<>();
+        this.keys = new KeyDictionary<>();
+        this.allReferenceSets = new ReferenceSets<>(keys, key -> key);
     }
 
     public void handle(H4aKey currentKey) {
         Set<H4aKey> allLanguageRefs = new LinkedHashSet<>();
+        BitSet visited = new BitSet();
         Set<H4aKey> languages = extractLanguages(currentKey);
-        languages.forEach(reference -> populate(reference, allLanguageRefs));
+        languages.forEach(reference -> populate(reference, allLanguageRefs, visited));
 
         // No references to add
         if (allLanguageRefs.isEmpty()) {
@@ -40,7 +43,7 @@ public class H4aLanguagesHandler {
         // Add itself. This won't create duplicates because we are working with a set.
         allLanguageRefs.add(currentKey);
 
-        addToGlobalSet(allLanguageRefs);
+        allReferenceSets.add(allLanguageRefs);
 
 //        // Add current hymn to the set of all references, so we can properly audit the entire graph
 //        Set<H4aKey> hymnsToAudit = new HashSet<>(allLanguageRefs);
@@ -103,9 +106,10 @@ public class H4aLanguagesHandler {
     }
 
     /**
-     * Traverses the entire language graph and lists all songs found during traversal.
+     * Traverses the entire language graph and lists all songs found during traversal. Songs are marked as visited by
+     * their interned id.
      */
-    private void populate(H4aKey key, Set<H4aKey> allLanguageRefs) {
+    private void populate(H4aKey key, Set<H4aKey> allLanguageRefs, BitSet visited) {
         if (key.type() == HymnType.UNKNOWN) {
             return;
         }
@@ -117,37 +121,15 @@ public class H4aLanguagesHandler {
         if (!allHymns.containsKey(key)) {
             throw new IllegalArgumentException(String.format("%s not found in h4a db", key));
         }
-        if (allLanguageRefs.contains(key)) {
+        int id = keys.intern(key);
+        if (visited.get(id)) {
             return;
         }
+        visited.set(id);
         allLanguageRefs.add(key);
 
 //        extractParent(key).ifPresent(parent -> populate(parent, allLanguageRefs));
-        extractLanguages(key).forEach(language -> populate(language, allLanguageRefs));
-    }
-
-    /**
-     * Writes the language refs to the global set of all languages.
-     */
-    private void addToGlobalSet(Set<H4aKey> languageRefs) {
-        Set<Set<H4aKey>> matched = new LinkedHashSet<>();
-        for (H4aKey language : languageRefs) {
-            for (Set<H4aKey> key : allReferenceSets) {
-                if (key.contains(language)) {
-                    matched.add(key);
-                }
-            }
-        }
-        // Did not match anything in the current global set, so we should add it.
-        if (matched.isEmpty()) {
-            allReferenceSets.add(languageRefs);
-        } else if (matched.size() == 1) {
-            matched.stream().findFirst().get().addAll(languageRefs);
-        } else {
-            // Each language reference should be in its unique set. If there are multiple matching sets, then something
-            // is wrong.
-            throw new IllegalArgumentException(languageRefs + " was not in a unique set, but was in " + matched);
-        }
+        extractLanguages(key).forEach(language -> populate(language, allLanguageRefs, visited));
     }
 
     /**
@@ -232,7 +214,7 @@ public class H4aLanguagesHandler {
      * Audits {@link #allReferenceSets} to see if there are conflicting sets.
      */
     public void auditGlobalLanguagesSet() {
-        for (Set<H4aKey> languageSet : allReferenceSets) {
+        for (Set<H4aKey> languageSet : allReferenceSets.getSets()) {
             auditLanguageSet(languageSet);
         }
     }
@@ -67,7 +67,7 @@ public class HymnalDbHandler {
             HymnType hymnType = HymnType.fromHymnalDb(resultSet.getString(2));
             String hymnNumber = resultSet.getString(3);
             String queryParams = resultSet.getString(4);
-            allHymns.put(new HymnalDbKey(hymnType, hymnNumber, queryParams),
+            allHymns.put(HymnalDbKey.of(hymnType, hymnNumber, queryParams),
                     new ConvertedHymn(resultSet.getString(5),
                             resultSet.getString(6),
                             resultSet.getString(7),
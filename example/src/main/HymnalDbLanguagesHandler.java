@@ -1,11 +1,9 @@
 package main;
 
-import com.google.gson.Gson;
 import com.tylersuehr.sql.ContentValues;
 import models.*;
 import repositories.DatabaseClient;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -23,57 +21,64 @@ public class HymnalDbLanguagesHandler {
     static {
         // Both h/1353 and h/8476 are valid translations of the Chinese song ch/476 and the French song hf/129.
         HYMNAL_DB_LANGUAGES_EXCEPTIONS.add(Set.of(
-                new HymnalDbKey(HymnType.CLASSIC_HYMN, "1353", null),
-                new HymnalDbKey(HymnType.CLASSIC_HYMN, "8476", null),
-                new HymnalDbKey(HymnType.FRENCH, "129", null),
-                new HymnalDbKey(HymnType.TAGALOG, "1353", null),
-                new HymnalDbKey(HymnType.CHINESE, "476", null),
-                new HymnalDbKey(HymnType.CHINESE, "476", "?gb=1")));
+                HymnalDbKey.of(HymnType.CLASSIC_HYMN, "1353", null),
+                HymnalDbKey.of(HymnType.CLASSIC_HYMN, "8476", null),
+                HymnalDbKey.of(HymnType.FRENCH, "129", null),
+                HymnalDbKey.of(HymnType.TAGALOG, "1353", null),
+                HymnalDbKey.of(HymnType.CHINESE, "476", null),
+                HymnalDbKey.of(HymnType.CHINESE, "476", "?gb=1")));
 
         // Both h/8330 and ns/154 are valid translations of the Chinese song ch/330.
         HYMNAL_DB_LANGUAGES_EXCEPTIONS.add(Set.of(
-                new HymnalDbKey(HymnType.CLASSIC_HYMN, "8330", null),
-                new HymnalDbKey(HymnType.NEW_SONG, "154", null)));
+                HymnalDbKey.of(HymnType.CLASSIC_HYMN, "8330", null),
+                HymnalDbKey.of(HymnType.NEW_SONG, "154", null)));
 
         // Both ns/19 and ns/474 are valid translations of the Chinese song ts/428.
         HYMNAL_DB_LANGUAGES_EXCEPTIONS.add(Set.of(
-                new HymnalDbKey(HymnType.NEW_SONG, "19", null),
-                new HymnalDbKey(HymnType.NEW_SONG, "474", null)));
+                HymnalDbKey.of(HymnType.NEW_SONG, "19", null),
+                HymnalDbKey.of(HymnType.NEW_SONG, "474", null)));
 
         // h/505 seems to have two linked Chinese songs, that from my investigation via Google Translate, both are
         // valid translations of that song.
         HYMNAL_DB_LANGUAGES_EXCEPTIONS.add(Set.of(
-                new HymnalDbKey(HymnType.CHINESE, "383", null),
-                new HymnalDbKey(HymnType.CHINESE, "383", "?gb=1"),
-                new HymnalDbKey(HymnType.CHINESE_SUPPLEMENT, "27", null),
-                new HymnalDbKey(HymnType.CHINESE_SUPPLEMENT, "27", "?gb=1")));
+                HymnalDbKey.of(HymnType.CHINESE, "383", null),
+                HymnalDbKey.of(HymnType.CHINESE, "383", "?gb=1"),
+                HymnalDbKey.of(HymnType.CHINESE_SUPPLEMENT, "27", null),
+                HymnalDbKey.of(HymnType.CHINESE_SUPPLEMENT, "27", "?gb=1")));
 
         // h/893 seems to have two linked Chinese songs, that from my investigation via Google Translate, both are
         // valid translations of that song.
         HYMNAL_DB_LANGUAGES_EXCEPTIONS.add(Set.of(
-                new HymnalDbKey(HymnType.CHINESE, "641", null),
-                new HymnalDbKey(HymnType.CHINESE, "641", "?gb=1"),
-                new HymnalDbKey(HymnType.CHINESE_SUPPLEMENT, "917", null),
-                new HymnalDbKey(HymnType.CHINESE_SUPPLEMENT, "917", "?gb=1")));
+                HymnalDbKey.of(HymnType.CHINESE, "641", null),
+                HymnalDbKey.of(HymnType.CHINESE, "641", "?gb=1"),
+                HymnalDbKey.of(HymnType.CHINESE_SUPPLEMENT, "917", null),
+                HymnalDbKey.of(HymnType.CHINESE_SUPPLEMENT, "917", "?gb=1")));
 
         // h/1353 and h/8476 are essentially two slightly different versions of the same song. So both should link to
         // the same set of translations, since the lyrics are very similar.
         HYMNAL_DB_LANGUAGES_EXCEPTIONS.add(Set.of(
-                new HymnalDbKey(HymnType.CLASSIC_HYMN, "1353", null),
-                new HymnalDbKey(HymnType.CLASSIC_HYMN, "8476", null),
-                new HymnalDbKey(HymnType.TAGALOG, "1353", null),
-                new HymnalDbKey(HymnType.CHINESE, "476", null),
-                new HymnalDbKey(HymnType.CHINESE, "476", "?gb=1")));
+                HymnalDbKey.of(HymnType.CLASSIC_HYMN, "1353", null),
+                HymnalDbKey.of(HymnType.CLASSIC_HYMN, "8476", null),
+                HymnalDbKey.of(HymnType.TAGALOG, "1353", null),
+                HymnalDbKey.of(HymnType.CHINESE, "476", null),
+                HymnalDbKey.of(HymnType.CHINESE, "476", "?gb=1")));
 
         // T437 is from H4A, and seems like also a valid translation of h/437 as well as ht/c333
         HYMNAL_DB_LANGUAGES_EXCEPTIONS.add(Set.of(
-                new HymnalDbKey(HymnType.TAGALOG, "c333", null),
-                new HymnalDbKey(HymnType.TAGALOG, "437", null)));
+                HymnalDbKey.of(HymnType.TAGALOG, "c333", null),
+                HymnalDbKey.of(HymnType.TAGALOG, "437", null)));
     }
 
+    private static final KeySetAuditor AUDITOR = new KeySetAuditor(
+            "Language", "languages", HYMNAL_DB_LANGUAGES_EXCEPTIONS,
+            Map.of(HymnType.CHINESE, 2, HymnType.CHINESE_SUPPLEMENT, 2),
+            EnumSet.of(HymnType.CLASSIC_HYMN, HymnType.NEW_SONG, HymnType.HOWARD_HIGASHI),
+            false);
+
     private final DatabaseClient client;
     private final Map<HymnalDbKey, ConvertedHymn> allHymns;
-    private final Set<Set<Reference>> allReferenceSets;
+    private final LanguageGroups languageGroups;
+    private final List<HymnalDbKey> pendingKeys;
 
     public static HymnalDbLanguagesHandler create(DatabaseClient client, Map<HymnalDbKey, ConvertedHymn> allHymns) {
         return new HymnalDbLanguagesHandler(client, allHymns);
@@ -82,175 +87,239 @@ public class HymnalDbLanguagesHandler {
     private HymnalDbLanguagesHandler(DatabaseClient client, Map<HymnalDbKey, ConvertedHymn> allHymns) {
         this.allHymns = allHymns;
         this.client = client;
-        this.allReferenceSets = new LinkedHashSet<>();
+        this.languageGroups = new LanguageGroups();
+        this.pendingKeys = new ArrayList<>();
     }
 
+    /**
+     * Queues the current song. Its language group depends on which songs were handled before it, so the groups are
+     * built once all songs have been handled, in the order they were handled.
+     */
     public void handle(HymnalDbKey currentKey) {
-        Set<Reference> allLanguageRefs = new LinkedHashSet<>();
         Set<Reference> references = allHymns.get(currentKey).languageReferences;
         assert references != null;
-        references.forEach(reference -> populate(reference, allLanguageRefs));
 
         // No references to add
-        if (allLanguageRefs.isEmpty()) {
+        if (references.isEmpty()) {
             return;
         }
 
-        addUnreferencedSongs(currentKey, allLanguageRefs);
-        addToGlobalSet(allLanguageRefs);
+        for (Reference reference : references) {
+            if (!allHymns.containsKey(reference.key)) {
+                throw new IllegalArgumentException(String.format("%s not found in hymnal db", reference.key));
+            }
+        }
+        pendingKeys.add(currentKey);
     }
 
     /**
-     * Traverses the entire language graph and adds all songs found during traversal into allLanguageRefs.
+     * Adds everything each handled song can reach through the language graph, along with the song itself, to one
+     * language group. Each key keeps the text of the reference it was first reached through, or its inferred text.
+     *
+     * A song reached by an earlier song has had everything it can reach added to that song's group already, so the
+     * traversal stops there, and each song is only traversed once per pass.
      */
-    private void populate(Reference languageReference, Set<Reference> allLanguageRefs) {
+    private void resolvePendingKeys() {
+        CycleFinder cycleFinder = new CycleFinder().find(pendingKeys);
+        Set<HymnalDbKey> visited = new HashSet<>();
+        for (HymnalDbKey currentKey : pendingKeys) {
+            List<Reference> found = new ArrayList<>();
+            Set<Integer> matched = new LinkedHashSet<>();
+            allHymns.get(currentKey).languageReferences.forEach(reference -> populate(reference, visited, found, matched));
+
+            // A song that can reach itself through the language graph was already found with the text of that
+            // reference.
+            if (!cycleFinder.isOnCycle(currentKey)) {
+                Reference inferred = inferReference(currentKey);
+                if (inferred != null) {
+                    found.add(inferred);
+                    int group = languageGroups.groupOf(currentKey);
+                    if (group != LanguageGroups.NO_GROUP) {
+                        matched.add(group);
+                    }
+                }
+            }
+
+            if (matched.size() > 1) {
+                // Each language reference should be in its unique set. If there are multiple matching sets, then
+                // something is wrong.
+                Set<Reference> languageRefs = traverse(currentKey);
+                languageRefs.addAll(found);
+                Set<Set<Reference>> matchedSets = new LinkedHashSet<>();
+                matched.forEach(group -> matchedSets.add(languageGroups.getGroup(group)));
+                throw new IllegalArgumentException(languageRefs + " was not in a unique set, but was in " + matchedSets);
+            }
+            languageGroups.addAll(found, matched.isEmpty() ? LanguageGroups.NO_GROUP : matched.iterator().next());
+        }
+        pendingKeys.clear();
+    }
+
+    /**
+     * Traverses the language graph from the reference, adding every song that hasn't been visited in this pass to
+     * found, and the group of every song it reaches that's already in a group to matched.
+     */
+    private void populate(Reference languageReference, Set<HymnalDbKey> visited, List<Reference> found,
+                          Set<Integer> matched) {
         HymnalDbKey key = languageReference.key;
-        if (!allHymns.containsKey(key)) {
+        ConvertedHymn hymn = allHymns.get(key);
+        if (hymn == null) {
             throw new IllegalArgumentException(String.format("%s not found in hymnal db", key));
         }
-        Set<HymnalDbKey> languageKeys =
-                allLanguageRefs
-                        .stream()
-                        .map(reference -> reference.key)
-                        .collect(Collectors.toSet());
-        if (languageKeys.contains(key)) {
+        int group = languageGroups.groupOf(key);
+        if (group != LanguageGroups.NO_GROUP) {
+            matched.add(group);
+        }
+        if (!visited.add(key)) {
             return;
         }
 
-        allLanguageRefs.add(Reference.create(languageReference.text, key));
-        allHymns.get(key).languageReferences.forEach(reference -> populate(reference, allLanguageRefs));
+        found.add(Reference.create(languageReference.text, key));
+        hymn.languageReferences.forEach(reference -> populate(reference, visited, found, matched));
     }
 
     /**
-     * We hope that most songs are some kind of circular reference (i.e. h/1 -> cb/1 -> h/1). This way, we get the text
-     * of the reference for free. However, there are some cases where a song references a group of songs, but there is
-     * no reference to it. In those cases, we will need to infer the text from the type of the hymn.
+     * @return every song reachable from the current song through the language graph, with the text of the reference it
+     * was first reached through
      */
-    private void addUnreferencedSongs(HymnalDbKey currentKey, Set<Reference> allLanguageRefs) {
-        Set<HymnalDbKey> languages = allLanguageRefs.stream()
-                                                    .map(reference -> reference.key)
-                                                    .collect(Collectors.toUnmodifiableSet());
-        if (!languages.contains(currentKey)) {
-            // Infer reference from type.
-            switch (currentKey.hymnType) {
-                case GERMAN:
-                    allLanguageRefs.add(Reference.create("German", currentKey));
-                    return;
-                case FRENCH:
-                    allLanguageRefs.add(Reference.create("French", currentKey));
-                    return;
-                case NEW_TUNE:
-                    // Fall Through
-                case CLASSIC_HYMN:
-                    // It's a new or alternate tune that references the translation of the original tune. For now, we
-                    // are NOT supporting such linkages since the languages they refer to likely is not going to be
-                    // adhering to that new tune (sheet music, mp3, etc.). So in that case, just ignore it and leave the
-                    // hymn as unreferenced.
-                    if (currentKey.hymnNumber.matches("\\d+b")) {
-                        return;
-                    }
-                default:
-                    throw new IllegalArgumentException("Unable to infer text for unreferenced hymn: " + currentKey + "-" + allLanguageRefs);
+    private Set<Reference> traverse(HymnalDbKey currentKey) {
+        Map<HymnalDbKey, Reference> reached = new LinkedHashMap<>();
+        Deque<Iterator<Reference>> stack = new ArrayDeque<>();
+        stack.push(allHymns.get(currentKey).languageReferences.iterator());
+        while (!stack.isEmpty()) {
+            if (!stack.peek().hasNext()) {
+                stack.pop();
+                continue;
+            }
+            Reference reference = stack.peek().next();
+            if (reached.putIfAbsent(reference.key, reference) == null) {
+                stack.push(allHymns.get(reference.key).languageReferences.iterator());
             }
         }
+        return new LinkedHashSet<>(reached.values());
     }
 
     /**
-     * Writes the language refs to the global set of all languages.
+     * We hope that most songs are some kind of circular reference (i.e. h/1 -> cb/1 -> h/1). This way, we get the text
+     * of the reference for free. However, there are some cases where a song references a group of songs, but there is
+     * no reference to it. In those cases, we will need to infer the text from the type of the hymn.
+     *
+     * @return the song with its inferred text, or null if it should be left unreferenced
      */
-    private void addToGlobalSet(Set<Reference> languageRefs) {
-        Set<Set<Reference>> matched = new LinkedHashSet<>();
-        for (Reference reference : languageRefs) {
-            for (Set<Reference> references : allReferenceSets) {
-                if (references.contains(reference)) {
-                    matched.add(references);
+    private Reference inferReference(HymnalDbKey currentKey) {
+        // Infer reference from type.
+        switch (currentKey.hymnType) {
+            case GERMAN:
+                return Reference.create("German", currentKey);
+            case FRENCH:
+                return Reference.create("French", currentKey);
+            case NEW_TUNE:
+                // Fall Through
+            case CLASSIC_HYMN:
+                // It's a new or alternate tune that references the translation of the original tune. For now, we
+                // are NOT supporting such linkages since the languages they refer to likely is not going to be
+                // adhering to that new tune (sheet music, mp3, etc.). So in that case, just ignore it and leave the
+                // hymn as unreferenced.
+                if (currentKey.hymnNumber.matches("\\d+b")) {
+                    return null;
                 }
-            }
-        }
-        // Did not match anything in the current global set, so we should add it.
-        if (matched.isEmpty()) {
-            allReferenceSets.add(languageRefs);
-        } else if (matched.size() == 1) {
-            matched.stream().findFirst().get().addAll(languageRefs);
-        } else {
-            // Each language reference should be in its unique set. If there are multiple matching sets, then something
-            // is wrong.
-            throw new IllegalArgumentException(languageRefs + " was not in a unique set, but was in " + matched);
+            default:
+                throw new IllegalArgumentException("Unable to infer text for unreferenced hymn: " + currentKey + "-" + traverse(currentKey));
         }
     }
 
     /**
-     * Audits {@link #allReferenceSets} to see if there are conflicting sets.
+     * Finds the songs that can reach themselves through language references, using Tarjan's strongly connected
+     * components, so every song is visited once. Songs are interned in visit order, so a song's id is also its Tarjan
+     * index.
      */
-    public void auditGlobalLanguagesSet() {
-        for (Set<Reference> references : allReferenceSets) {
-            auditLanguageSet(references.stream().map(reference -> reference.key).collect(Collectors.toSet()));
+    private class CycleFinder {
+
+        private final KeyDictionary<HymnalDbKey> visited = new KeyDictionary<>();
+        private final BitSet onStack = new BitSet();
+        private final BitSet onCycles = new BitSet();
+        private int[] lowLinks = new int[64];
+        private int[] stack = new int[64];
+        private int stackSize;
+
+        CycleFinder find(Collection<HymnalDbKey> keys) {
+            for (HymnalDbKey key : keys) {
+                if (visited.idOf(key) == KeyDictionary.NO_ID) {
+                    connect(key);
+                }
+            }
+            return this;
         }
-    }
 
-    /**
-     * Audit set of {@link HymnalDbKey}s to see if there are conflicting types.
-     */
-    private void auditLanguageSet(Set<HymnalDbKey> setToAudit) {
-        if (setToAudit.size() == 1) {
-            throw new IllegalArgumentException("Language set with only 1 key is a dangling reference, which needs fixing: " + setToAudit);
+        boolean isOnCycle(HymnalDbKey key) {
+            int id = visited.idOf(key);
+            return id != KeyDictionary.NO_ID && onCycles.get(id);
         }
 
-        // Extract the hymn types for audit.
-        List<HymnType> hymnTypes = setToAudit.stream().map(language -> language.hymnType).collect(Collectors.toList());
+        private void connect(HymnalDbKey key) {
+            int index = visited.intern(key);
+            if (index == lowLinks.length) {
+                lowLinks = Arrays.copyOf(lowLinks, index * 2);
+                stack = Arrays.copyOf(stack, index * 2);
+            }
+            lowLinks[index] = index;
+            stack[stackSize++] = index;
+            onStack.set(index);
 
-        // Verify that the same hymn type doesn't appear more than the allowed number of times the languages list.
-        for (HymnType hymnType : HymnType.values()) {
-            int timesAllowed = 1;
-            if (hymnType == HymnType.CHINESE || hymnType == HymnType.CHINESE_SUPPLEMENT) {
-                timesAllowed = 2;
+            ConvertedHymn hymn = allHymns.get(key);
+            if (hymn == null) {
+                throw new IllegalArgumentException(String.format("%s not found in hymnal db", key));
             }
-            // For each song like h225b or ns92f, increment the allowance of that type of hymn, since those are valid
-            // alternates.
-            if ((hymnType == HymnType.CLASSIC_HYMN || hymnType == HymnType.NEW_SONG || hymnType == HymnType.HOWARD_HIGASHI)) {
-                for (HymnalDbKey key : setToAudit) {
-                    if (key.hymnType == hymnType && key.hymnNumber.matches("(\\D+\\d+\\D*)|(\\D*\\d+\\D+)")) {
-                        timesAllowed++;
-                    }
+            for (Reference reference : hymn.languageReferences) {
+                HymnalDbKey next = reference.key;
+                int nextIndex = visited.idOf(next);
+                if (nextIndex == index) {
+                    onCycles.set(index);
+                } else if (nextIndex == KeyDictionary.NO_ID) {
+                    connect(next);
+                    lowLinks[index] = Math.min(lowLinks[index], lowLinks[visited.idOf(next)]);
+                } else if (onStack.get(nextIndex)) {
+                    lowLinks[index] = Math.min(lowLinks[index], nextIndex);
                 }
             }
 
-            // If the current set includes an exception group, then remove that exception group from the list and audit
-            // again.
-            for (Set<HymnalDbKey> exception : HYMNAL_DB_LANGUAGES_EXCEPTIONS) {
-                if (setToAudit.containsAll(exception)) {
-                    if (!setToAudit.removeAll(exception)) {
-                        throw new IllegalArgumentException(exception + " was unable to be removed from " + setToAudit);
+            if (lowLinks[index] == index) {
+                int componentStart = stackSize;
+                do {
+                    componentStart--;
+                    onStack.clear(stack[componentStart]);
+                } while (stack[componentStart] != index);
+                if (stackSize - componentStart > 1) {
+                    for (int i = componentStart; i < stackSize; i++) {
+                        onCycles.set(stack[i]);
                     }
-                    auditLanguageSet(setToAudit);
-                    return;
                 }
-            }
-
-            if (Collections.frequency(hymnTypes, hymnType) > timesAllowed) {
-                throw new IllegalArgumentException(
-                        String.format("%s has too many instances of %s", setToAudit, hymnType));
+                stackSize = componentStart;
             }
         }
+    }
 
-        // Verify that incompatible hymn types don't appear together the languages list.
-        if ((hymnTypes.contains(HymnType.CLASSIC_HYMN) && hymnTypes.contains(HymnType.NEW_SONG))
-            || (hymnTypes.contains(HymnType.CLASSIC_HYMN) && hymnTypes.contains(HymnType.CHILDREN_SONG))
-            || hymnTypes.contains(HymnType.CHILDREN_SONG) && hymnTypes.contains(HymnType.NEW_SONG)
-            || hymnTypes.contains(HymnType.CHINESE) && hymnTypes.contains(HymnType.CHINESE_SUPPLEMENT)) {
-            throw new IllegalArgumentException(
-                    String.format("%s has incompatible languages types", setToAudit));
+    /**
+     * Audits the language groups to see if there are conflicting sets, reporting every conflict at once.
+     */
+    public void auditGlobalLanguagesSet() {
+        resolvePendingKeys();
+        List<Set<HymnalDbKey>> sets = new ArrayList<>();
+        for (Set<Reference> references : languageGroups.getGroups()) {
+            sets.add(references.stream().map(reference -> reference.key).collect(Collectors.toSet()));
         }
+        AUDITOR.audit(sets).throwIfViolated();
     }
 
     /**
-     * Augments the {@link ConvertedHymn#languagesJson} field if there are references that should be added from
-     * {@link #allReferenceSets}
+     * Augments the {@link ConvertedHymn#languagesJson} field if there are references that should be added from the
+     * language groups.
      */
     public void writeLanguageReferences() throws SQLException {
+        resolvePendingKeys();
+        SongDataWriter writer = new SongDataWriter(client.getDb());
         int timesWritten = 0;
         int timesInserted = 0;
-        for (Set<Reference> currentSet : allReferenceSets) {
+        for (Set<Reference> currentSet : languageGroups.getGroups()) {
             for (Reference currentReference : currentSet) {
                 HymnalDbKey currentKey = currentReference.key;
                 ConvertedHymn hymn = allHymns.get(currentKey);
@@ -280,7 +349,7 @@ public class HymnalDbLanguagesHandler {
                 }
 
                 // Add new languages into the languages json
-                Languages languages = new Gson().fromJson(hymn.languagesJson, Languages.class);
+                Languages languages = SongDataWriter.GSON.fromJson(hymn.languagesJson, Languages.class);
                 if (languages == null) {
                     languages = new Languages();
                     languages.setName("Languages");
@@ -310,29 +379,26 @@ public class HymnalDbLanguagesHandler {
                     languages.getData().add(datum);
                 }
 
-                // Write to database
-                String selection = "HYMN_TYPE = '" + currentKey.hymnType.hymnalDb + "' AND HYMN_NUMBER ='" + currentKey.hymnNumber + "' AND QUERY_PARAMS = '" + currentKey.queryParams + "'";
-                ResultSet resultSet = client.getDb().query("SONG_DATA", selection, null, null);
-                if (resultSet == null || !resultSet.next()) {
+                // Queue the write, so everything is written back together
+                if (!writer.exists(currentKey)) {
                     LOGGER.finer("Created new song: " + currentKey + " - " + hymn);
                     ContentValues contentValues = writeSong(currentKey, languages);
                     if (!DRY_RUN) {
                         LOGGER.info("Inserting " + currentKey);
                         timesInserted++;
-                        client.getDb().insert("song_data", contentValues);
+                        writer.insert(currentKey, contentValues);
                     }
                 } else {
-                    String languageJson = new Gson().toJson(languages);
-                    ContentValues contentValues = new ContentValues();
-                    contentValues.put("SONG_META_DATA_LANGUAGES", languageJson);
+                    String languageJson = SongDataWriter.GSON.toJson(languages);
                     if (!DRY_RUN) {
                         LOGGER.info("Writing to " + currentKey + " languageJson: " + languageJson);
                         timesWritten++;
-                        client.getDb().update("SONG_DATA", contentValues, selection);
+                        writer.update(currentKey, "SONG_META_DATA_LANGUAGES", languageJson);
                     }
                 }
             }
         }
+        writer.write();
         if (!DRY_RUN) {
             System.out.println("Rewrote " + timesWritten + " languageJsons");
             System.out.println("Inserted " + timesInserted + " new songs");
@@ -346,24 +412,24 @@ public class HymnalDbLanguagesHandler {
         contentValues.put("HYMN_TYPE", key.hymnType.hymnalDb);
         contentValues.put("HYMN_NUMBER", key.hymnNumber);
         contentValues.put("QUERY_PARAMS", key.queryParams);
-        contentValues.put("SONG_TITLE", TextUtils.escapeSingleQuotes(hymn.title));
-        contentValues.put("SONG_LYRICS", TextUtils.escapeSingleQuotes(hymn.lyricsJson));
-        contentValues.put("SONG_META_DATA_CATEGORY", TextUtils.escapeSingleQuotes(hymn.category));
-        contentValues.put("SONG_META_DATA_SUBCATEGORY", TextUtils.escapeSingleQuotes(hymn.subCategory));
-        contentValues.put("SONG_META_DATA_AUTHOR", TextUtils.escapeSingleQuotes(hymn.author));
-        contentValues.put("SONG_META_DATA_COMPOSER", TextUtils.escapeSingleQuotes(hymn.composer));
-        contentValues.put("SONG_META_DATA_KEY", TextUtils.escapeSingleQuotes(hymn.key));
-        contentValues.put("SONG_META_DATA_TIME", TextUtils.escapeSingleQuotes(hymn.time));
-        contentValues.put("SONG_META_DATA_METER", TextUtils.escapeSingleQuotes(hymn.meter));
-        contentValues.put("SONG_META_DATA_SCRIPTURES", TextUtils.escapeSingleQuotes(hymn.scriptures));
-        contentValues.put("SONG_META_DATA_HYMN_CODE", TextUtils.escapeSingleQuotes(hymn.hymnCode));
-        contentValues.put("SONG_META_DATA_MUSIC", TextUtils.escapeSingleQuotes(hymn.musicJson));
-        contentValues.put("SONG_META_DATA_SVG_SHEET_MUSIC", TextUtils.escapeSingleQuotes(hymn.svgJson));
-        contentValues.put("SONG_META_DATA_PDF_SHEET_MUSIC", TextUtils.escapeSingleQuotes(hymn.pdfJson));
+        contentValues.put("SONG_TITLE", hymn.title);
+        contentValues.put("SONG_LYRICS", hymn.lyricsJson);
+        contentValues.put("SONG_META_DATA_CATEGORY", hymn.category);
+        contentValues.put("SONG_META_DATA_SUBCATEGORY", hymn.subCategory);
+        contentValues.put("SONG_META_DATA_AUTHOR", hymn.author);
+        contentValues.put("SONG_META_DATA_COMPOSER", hymn.composer);
+        contentValues.put("SONG_META_DATA_KEY", hymn.key);
+        contentValues.put("SONG_META_DATA_TIME", hymn.time);
+        contentValues.put("SONG_META_DATA_METER", hymn.meter);
+        contentValues.put("SONG_META_DATA_SCRIPTURES", hymn.scriptures);
+        contentValues.put("SONG_META_DATA_HYMN_CODE", hymn.hymnCode);
+        contentValues.put("SONG_META_DATA_MUSIC", hymn.musicJson);
+        contentValues.put("SONG_META_DATA_SVG_SHEET_MUSIC", hymn.svgJson);
+        contentValues.put("SONG_META_DATA_PDF_SHEET_MUSIC", hymn.pdfJson);
 
         if (!languages.getData().isEmpty()) {
-            String languagesJson = new Gson().toJson(languages);
-            contentValues.put("SONG_META_DATA_LANGUAGES", TextUtils.escapeSingleQuotes(languagesJson));
+            String languagesJson = SongDataWriter.GSON.toJson(languages);
+            contentValues.put("SONG_META_DATA_LANGUAGES", languagesJson);
         }
         return contentValues;
     }
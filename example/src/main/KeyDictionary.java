@@ -0,0 +1,47 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns keys (e.g. {@link models.HymnalDbKey} or {@link models.H4aKey}) and assigns each one a dense int id, in the
+ * order they were first seen, so graph passes can keep their state in arrays and bit sets indexed by id.
+ */
+public final class KeyDictionary<K> {
+
+    public static final int NO_ID = -1;
+
+    private final Map<K, Integer> ids = new HashMap<>();
+    private final List<K> keys = new ArrayList<>();
+
+    /**
+     * @return the id of the key, assigning the next id if it hasn't been seen yet
+     */
+    public int intern(K key) {
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = keys.size();
+            ids.put(key, id);
+            keys.add(key);
+        }
+        return id;
+    }
+
+    /**
+     * @return the id of the key, or {@link #NO_ID} if it hasn't been seen
+     */
+    public int idOf(K key) {
+        Integer id = ids.get(key);
+        return id == null ? NO_ID : id;
+    }
+
+    public K keyOf(int id) {
+        return keys.get(id);
+    }
+
+    public int size() {
+        return keys.size();
+    }
+}
@@ -0,0 +1,121 @@
+package main;
+
+import models.HymnType;
+import models.HymnalDbKey;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Audits sets of {@link HymnalDbKey}s that should all be versions of the same song (e.g. language or relevant sets).
+ *
+ * A set fails if it's a single dangling key, has more of a hymn type than allowed, or mixes incompatible hymn types.
+ * A set that contains an exception group has that group removed and the remainder audited instead. Sets are audited
+ * in parallel on the common fork-join pool, and every violation ends up in the {@link AuditReport}.
+ */
+final class KeySetAuditor {
+
+    /**
+     * Songs like h/225b or ns/92f, which are valid alternates of another song of the same type.
+     */
+    private static final Pattern ALTERNATE_NUMBER = Pattern.compile("(\\D+\\d+\\D*)|(\\D*\\d+\\D+)");
+
+    private static final HymnType[][] INCOMPATIBLE_TYPES = {
+            {HymnType.CLASSIC_HYMN, HymnType.NEW_SONG},
+            {HymnType.CLASSIC_HYMN, HymnType.CHILDREN_SONG},
+            {HymnType.CHILDREN_SONG, HymnType.NEW_SONG},
+            {HymnType.CHINESE, HymnType.CHINESE_SUPPLEMENT}};
+
+    private final String name;
+    private final String typesName;
+    private final ExceptionGroups exceptions;
+    private final Map<HymnType, Integer> allowances;
+    private final Set<HymnType> alternateTypes;
+    private final boolean incompatibleFirst;
+
+    /**
+     * @param name used in messages, e.g. "Language" or "Relevant"
+     * @param typesName used in the incompatible types message, e.g. "languages" or "relevant"
+     * @param exceptions groups that are allowed to break the rules together, indexed when the auditor is created
+     * @param allowances how many times a type may appear, if more than once
+     * @param alternateTypes types whose alternates (see {@link #ALTERNATE_NUMBER}) each raise that type's allowance
+     * @param incompatibleFirst whether incompatible types are reported before too many instances of a type
+     */
+    KeySetAuditor(String name, String typesName, Set<Set<HymnalDbKey>> exceptions, Map<HymnType, Integer> allowances,
+                  Set<HymnType> alternateTypes, boolean incompatibleFirst) {
+        this.name = name;
+        this.typesName = typesName;
+        this.exceptions = new ExceptionGroups(exceptions);
+        this.allowances = allowances.isEmpty() ? new EnumMap<>(HymnType.class) : new EnumMap<>(allowances);
+        this.alternateTypes = alternateTypes.isEmpty() ? EnumSet.noneOf(HymnType.class) : EnumSet.copyOf(alternateTypes);
+        this.incompatibleFirst = incompatibleFirst;
+    }
+
+    AuditReport audit(Collection<? extends Collection<HymnalDbKey>> sets) {
+        List<String> violations = sets.parallelStream()
+                                      .map(set -> audit(new HashSet<>(set)))
+                                      .flatMap(List::stream)
+                                      .collect(Collectors.toList());
+        return new AuditReport(name, sets.size(), violations);
+    }
+
+    /**
+     * @return the violations in the set, in the order they're checked
+     */
+    List<String> audit(Set<HymnalDbKey> setToAudit) {
+        List<String> violations = new ArrayList<>();
+        while (true) {
+            if (setToAudit.size() == 1) {
+                violations.add(name + " set with only 1 key is a dangling reference, which needs fixing: " + setToAudit);
+                return violations;
+            }
+
+            // If the current set includes an exception group, then remove that exception group from the set and audit
+            // the rest.
+            Set<HymnalDbKey> exception = exceptions.findFirstIn(setToAudit);
+            if (exception == null) {
+                break;
+            }
+            if (!setToAudit.removeAll(exception)) {
+                violations.add(exception + " was unable to be removed from " + setToAudit);
+                return violations;
+            }
+        }
+
+        // Count each type, and each type's alternates, in a single pass.
+        Map<HymnType, Integer> counts = new EnumMap<>(HymnType.class);
+        Map<HymnType, Integer> alternates = new EnumMap<>(HymnType.class);
+        for (HymnalDbKey key : setToAudit) {
+            counts.merge(key.hymnType, 1, Integer::sum);
+            if (alternateTypes.contains(key.hymnType) && ALTERNATE_NUMBER.matcher(key.hymnNumber).matches()) {
+                alternates.merge(key.hymnType, 1, Integer::sum);
+            }
+        }
+
+        if (incompatibleFirst) {
+            checkIncompatibleTypes(setToAudit, counts, violations);
+        }
+        for (Map.Entry<HymnType, Integer> count : counts.entrySet()) {
+            HymnType hymnType = count.getKey();
+            int timesAllowed = allowances.getOrDefault(hymnType, 1) + alternates.getOrDefault(hymnType, 0);
+            if (count.getValue() > timesAllowed) {
+                violations.add(String.format("%s has too many instances of %s", setToAudit, hymnType));
+            }
+        }
+        if (!incompatibleFirst) {
+            checkIncompatibleTypes(setToAudit, counts, violations);
+        }
+        return violations;
+    }
+
+    private void checkIncompatibleTypes(Set<HymnalDbKey> setToAudit, Map<HymnType, Integer> counts,
+                                        List<String> violations) {
+        for (HymnType[] incompatible : INCOMPATIBLE_TYPES) {
+            if (counts.containsKey(incompatible[0]) && counts.containsKey(incompatible[1])) {
+                violations.add(String.format("%s has incompatible %s types", setToAudit, typesName));
+                return;
+            }
+        }
+    }
+}
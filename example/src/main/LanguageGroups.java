@@ -0,0 +1,101 @@
+package main;
+
+import models.HymnalDbKey;
+import models.Reference;
+
+import java.util.*;
+
+/**
+ * Disjoint sets of {@link HymnalDbKey}s that are translations of each other, kept as a union-find forest (union by size
+ * and path halving), so finding the group of a key is near-constant. Members are interned into a {@link KeyDictionary},
+ * so the forest itself is just int arrays indexed by member id.
+ *
+ * Each key keeps the first text it was added with, which becomes the text of its {@link Reference}.
+ */
+final class LanguageGroups {
+
+    static final int NO_GROUP = -1;
+
+    private final KeyDictionary<HymnalDbKey> members = new KeyDictionary<>();
+    private final List<String> texts = new ArrayList<>();
+    private int[] parents = new int[64];
+    private int[] sizes = new int[64];
+
+    /**
+     * @return the group of the key, or {@link #NO_GROUP} if it isn't a member
+     */
+    int groupOf(HymnalDbKey key) {
+        int id = members.idOf(key);
+        return id == KeyDictionary.NO_ID ? NO_GROUP : find(id);
+    }
+
+    /**
+     * Adds the references that aren't members yet to the group, or to a new group if it's {@link #NO_GROUP}.
+     */
+    void addAll(Collection<Reference> references, int group) {
+        int root = group;
+        for (Reference reference : references) {
+            int id = members.intern(reference.key);
+            if (id < texts.size()) {
+                continue;
+            }
+            if (id == parents.length) {
+                parents = Arrays.copyOf(parents, id * 2);
+                sizes = Arrays.copyOf(sizes, id * 2);
+            }
+            parents[id] = id;
+            sizes[id] = 1;
+            texts.add(reference.text);
+            root = root == NO_GROUP ? id : union(root, id);
+        }
+    }
+
+    /**
+     * @return the members of the group, in the order they were added
+     */
+    Set<Reference> getGroup(int group) {
+        Set<Reference> references = new LinkedHashSet<>();
+        for (int id = 0; id < texts.size(); id++) {
+            if (find(id) == group) {
+                references.add(Reference.create(texts.get(id), members.keyOf(id)));
+            }
+        }
+        return references;
+    }
+
+    /**
+     * @return every group as a set of references, in the order the groups were created
+     */
+    Collection<Set<Reference>> getGroups() {
+        Map<Integer, Set<Reference>> groups = new LinkedHashMap<>();
+        for (int id = 0; id < texts.size(); id++) {
+            groups.computeIfAbsent(find(id), root -> new LinkedHashSet<>())
+                  .add(Reference.create(texts.get(id), members.keyOf(id)));
+        }
+        return groups.values();
+    }
+
+    /**
+     * Merges two groups.
+     *
+     * @return the root of the merged group
+     */
+    private int union(int rootA, int rootB) {
+        if (sizes[rootA] < sizes[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parents[rootB] = rootA;
+        sizes[rootA] += sizes[rootB];
+        return rootA;
+    }
+
+    private int find(int id) {
+        while (parents[id] != id) {
+            parents[id] = parents[parents[id]];
+            id = parents[id];
+        }
+        return id;
+    }
+}
@@ -0,0 +1,180 @@
+package main;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static main.Main.LOGGER;
+
+/**
+ * Precomputed pinyin4j readings (lowercase, tone marks, ü), stored in a binary file and memory-mapped on open.
+ *
+ * File layout, big-endian:
+ * <pre>
+ * int magic, int version, int first char, int char count
+ * int[char count + 1] offsets into the pool
+ * byte[] pool of UTF-8 readings
+ * </pre>
+ * A char whose entry is empty has no reading. The file is generated from pinyin4j the first time it's missing, and
+ * regenerated if it's from an older version or damaged.
+ */
+final class PinyinTable {
+
+    private static final int MAGIC = 0x50494e59; // "PINY"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 4;
+
+    private final ByteBuffer buffer;
+    private final IntBuffer offsets;
+    private final int poolStart;
+    private final int firstChar;
+    private final int charCount;
+
+    /**
+     * Maps the table at the path, generating it first if it doesn't exist or is from an older version, and generating
+     * it again if it turns out to be damaged (e.g. truncated).
+     */
+    static PinyinTable open(Path path) throws IOException, BadHanyuPinyinOutputFormatCombination {
+        if (!isCurrent(path)) {
+            LOGGER.info("Generating pinyin table at " + path);
+            generate(path);
+        }
+        try {
+            return map(path);
+        } catch (IOException e) {
+            LOGGER.warning("Regenerating damaged pinyin table at " + path + ": " + e.getMessage());
+            generate(path);
+            return map(path);
+        }
+    }
+
+    private static PinyinTable map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new PinyinTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private PinyinTable(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_INTS * Integer.BYTES
+                || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a pinyin table");
+        }
+        this.buffer = buffer;
+        this.firstChar = buffer.getInt(8);
+        this.charCount = buffer.getInt(12);
+        if (firstChar < 0 || charCount < 0 || firstChar + (long) charCount > Character.MAX_VALUE + 1
+                || buffer.capacity() < (HEADER_INTS + (long) charCount + 1) * Integer.BYTES) {
+            throw new IOException("Truncated pinyin table");
+        }
+        this.offsets = buffer.position(HEADER_INTS * Integer.BYTES).slice().asIntBuffer();
+        this.poolStart = (HEADER_INTS + charCount + 1) * Integer.BYTES;
+        // Every entry must lie within the pool, so lookups never read past the end of the mapping
+        int previous = 0;
+        for (int i = 0; i <= charCount; i++) {
+            int offset = offsets.get(i);
+            if (offset < previous) {
+                throw new IOException("Corrupt pinyin table offsets");
+            }
+            previous = offset;
+        }
+        if (poolStart + (long) previous != buffer.capacity()) {
+            throw new IOException("Truncated pinyin table");
+        }
+    }
+
+    /**
+     * @return the first pinyin reading of the char, or null if it has none
+     */
+    String get(char c) {
+        int index = c - firstChar;
+        if (index < 0 || index >= charCount) {
+            return null;
+        }
+        int start = offsets.get(index);
+        int end = offsets.get(index + 1);
+        if (start == end) {
+            return null;
+        }
+        // Absolute reads on a duplicate, so concurrent lookups don't share a position
+        byte[] reading = new byte[end - start];
+        buffer.duplicate().position(poolStart + start).get(reading);
+        return new String(reading, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isCurrent(Path path) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) < HEADER_INTS * Integer.BYTES) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+            channel.read(header, 0);
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+        }
+    }
+
+    private static void generate(Path path) throws IOException, BadHanyuPinyinOutputFormatCombination {
+        HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
+        format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        format.setToneType(HanyuPinyinToneType.WITH_TONE_MARK);
+        format.setVCharType(HanyuPinyinVCharType.WITH_U_UNICODE);
+
+        String[] readings = new String[Character.MAX_VALUE + 1];
+        int first = -1;
+        int last = -1;
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+            String[] transliteratedArray = PinyinHelper.toHanyuPinyinStringArray((char) c, format);
+            if (transliteratedArray == null || transliteratedArray.length == 0) {
+                continue;
+            }
+            readings[c] = transliteratedArray[0];
+            if (first < 0) {
+                first = c;
+            }
+            last = c;
+        }
+        int count = first < 0 ? 0 : last - first + 1;
+
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        int[] poolOffsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            poolOffsets[i] = pool.size();
+            String reading = readings[first + i];
+            if (reading != null) {
+                pool.write(reading.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        poolOffsets[count] = pool.size();
+
+        // Write next to the target and move it into place, so a crash never leaves a partial table behind
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(Math.max(first, 0));
+            out.writeInt(count);
+            for (int offset : poolOffsets) {
+                out.writeInt(offset);
+            }
+            pool.writeTo(out);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
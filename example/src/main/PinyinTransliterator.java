@@ -0,0 +1,94 @@
+package main;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static main.Main.LOGGER;
+
+/**
+ * Transliterates Chinese lyrics into lowercase pinyin with tone marks.
+ *
+ * Readings come from a precomputed, memory-mapped {@link PinyinTable}, falling back to pinyin4j if the table can't be
+ * opened. Either way, each char is looked up at most once; afterwards its pinyin is read straight out of a char-indexed
+ * cache, so the hot loop doesn't decode the same reading over and over. Safe to share across threads: cache entries are
+ * immutable strings, so two threads racing to fill the same entry just compute the same value twice.
+ */
+public final class PinyinTransliterator {
+
+    private static final Path TABLE_PATH = Paths.get("pinyin.bin");
+    private static final PinyinTransliterator INSTANCE = new PinyinTransliterator();
+
+    private final HanyuPinyinOutputFormat format;
+    private final PinyinTable pinyinTable;
+    private final String[] cache = new String[Character.MAX_VALUE + 1];
+
+    public static PinyinTransliterator getInstance() {
+        return INSTANCE;
+    }
+
+    private PinyinTransliterator() {
+        // Only read after construction, so it's effectively immutable
+        this.format = new HanyuPinyinOutputFormat();
+        format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        format.setToneType(HanyuPinyinToneType.WITH_TONE_MARK);
+        format.setVCharType(HanyuPinyinVCharType.WITH_U_UNICODE);
+        this.pinyinTable = openTable();
+    }
+
+    private static PinyinTable openTable() {
+        try {
+            return PinyinTable.open(TABLE_PATH);
+        } catch (IOException | BadHanyuPinyinOutputFormatCombination e) {
+            LOGGER.warning("Unable to open pinyin table, using pinyin4j directly: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Transliterates each char of the line, leaving chars without a pinyin reading (punctuation, latin, etc) as-is.
+     *
+     * @throws IllegalArgumentException if a char has a pinyin entry that can't be rendered
+     */
+    public String transliterate(String line) throws BadHanyuPinyinOutputFormatCombination {
+        StringBuilder transliteratedLine = new StringBuilder(line.length() * 3);
+        for (int i = 0; i < line.length(); i++) {
+            transliteratedLine.append(transliterate(line.charAt(i)));
+        }
+        return transliteratedLine.toString();
+    }
+
+    public String transliterate(char transliterableChar) throws BadHanyuPinyinOutputFormatCombination {
+        String transliterated = cache[transliterableChar];
+        if (transliterated == null) {
+            transliterated = lookUp(transliterableChar);
+            cache[transliterableChar] = transliterated;
+        }
+        return transliterated;
+    }
+
+    private String lookUp(char transliterableChar) throws BadHanyuPinyinOutputFormatCombination {
+        String transliterated;
+        if (pinyinTable != null) {
+            transliterated = pinyinTable.get(transliterableChar);
+        } else {
+            String[] transliteratedArray = PinyinHelper.toHanyuPinyinStringArray(transliterableChar, format);
+            transliterated = transliteratedArray == null ? null : transliteratedArray[0];
+        }
+        if (transliterated == null) {
+            return String.valueOf(transliterableChar);
+        }
+
+        if (transliterated.contains("none")) {
+            throw new IllegalArgumentException(transliterableChar + " was not able to be transliterated");
+        }
+        return transliterated;
+    }
+}
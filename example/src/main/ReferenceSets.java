@@ -0,0 +1,77 @@
+package main;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * The global sets of references found by walking a reference graph (e.g. the relevant songs of the hymnal db, or the
+ * languages of the H4A db). Each key is interned into a {@link KeyDictionary}, and the set it's in is kept in an array
+ * indexed by its id, so finding the sets a group of references overlaps doesn't scan every set.
+ *
+ * @param <K> the key of a song
+ * @param <E> the elements of a set, identified by their key
+ */
+final class ReferenceSets<K, E> {
+
+    private static final int NO_SET = -1;
+
+    private final KeyDictionary<K> keys;
+    private final Function<E, K> keyOf;
+    private final List<Set<E>> sets = new ArrayList<>();
+    private int[] setIds = new int[0];
+
+    ReferenceSets(KeyDictionary<K> keys, Function<E, K> keyOf) {
+        this.keys = keys;
+        this.keyOf = keyOf;
+    }
+
+    /**
+     * Adds the references to the set that already holds any of them, or as a new set if none of them are in a set yet.
+     *
+     * @throws IllegalArgumentException if the references are spread across more than one set
+     */
+    void add(Set<E> references) {
+        List<Integer> matched = new ArrayList<>(1);
+        for (E reference : references) {
+            int setId = setIdOf(keys.intern(keyOf.apply(reference)));
+            if (setId != NO_SET && !matched.contains(setId)) {
+                matched.add(setId);
+            }
+        }
+
+        final int setId;
+        if (matched.isEmpty()) {
+            // Did not match anything in the current global set, so we should add it.
+            setId = sets.size();
+            sets.add(references);
+        } else if (matched.size() == 1) {
+            setId = matched.get(0);
+            sets.get(setId).addAll(references);
+        } else {
+            // Each reference should be in its unique set. If there are multiple matching sets, then something is
+            // wrong.
+            Set<Set<E>> matchedSets = new LinkedHashSet<>();
+            matched.forEach(id -> matchedSets.add(sets.get(id)));
+            throw new IllegalArgumentException(references + " was not in a unique set, but was in " + matchedSets);
+        }
+        for (E reference : references) {
+            setIds[keys.idOf(keyOf.apply(reference))] = setId;
+        }
+    }
+
+    /**
+     * @return every set, in the order they were created
+     */
+    List<Set<E>> getSets() {
+        return sets;
+    }
+
+    private int setIdOf(int id) {
+        if (id >= setIds.length) {
+            int length = setIds.length;
+            setIds = Arrays.copyOf(setIds, Math.max(64, Math.max(id + 1, length * 2)));
+            Arrays.fill(setIds, length, setIds.length, NO_SET);
+        }
+        return setIds[id];
+    }
+}
@@ -0,0 +1,133 @@
+package main;
+
+import com.google.gson.Gson;
+import com.tylersuehr.sql.ContentValues;
+import com.tylersuehr.sql.SQLiteDatabase;
+import com.tylersuehr.sql.SQLiteStatement;
+import models.HymnalDbKey;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Collects the SONG_DATA rows changed by a pass over the graph, and writes them all back in one transaction.
+ *
+ * Values are bound to compiled statements rather than written into the SQL, so they must not be escaped. The songs
+ * that already exist are read with a single query, instead of one query per song.
+ */
+final class SongDataWriter {
+
+    /**
+     * Gson instances are thread-safe, so every handler can share one instead of creating one per song.
+     */
+    static final Gson GSON = new Gson();
+
+    private static final String TABLE = "SONG_DATA";
+
+    private final SQLiteDatabase db;
+    private final List<ContentValues> inserts = new ArrayList<>();
+    private final Map<String, List<String[]>> updates = new LinkedHashMap<>();
+    private Set<String> existingSongs;
+
+    SongDataWriter(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * @return true if the song is already in the database, or will be once the pending inserts are written
+     */
+    boolean exists(HymnalDbKey key) throws SQLException {
+        if (existingSongs == null) {
+            this.existingSongs = queryExistingSongs();
+        }
+        return existingSongs.contains(toSong(key.hymnType.hymnalDb, key.hymnNumber, key.queryParams));
+    }
+
+    void insert(HymnalDbKey key, ContentValues values) throws SQLException {
+        if (existingSongs == null) {
+            this.existingSongs = queryExistingSongs();
+        }
+        existingSongs.add(toSong(key.hymnType.hymnalDb, key.hymnNumber, key.queryParams));
+        inserts.add(values);
+    }
+
+    /**
+     * Sets a column of an existing song.
+     */
+    void update(HymnalDbKey key, String column, String value) {
+        updates.computeIfAbsent(column, c -> new ArrayList<>())
+               .add(new String[]{value, key.hymnType.hymnalDb, key.hymnNumber, key.queryParams});
+    }
+
+    /**
+     * Writes every pending insert, then every pending update, in a single transaction. If any of them fails, none of
+     * them are written.
+     */
+    void write() throws SQLException {
+        if (inserts.isEmpty() && updates.isEmpty()) {
+            return;
+        }
+
+        int updated = 0;
+        db.beginTransaction();
+        try {
+            if (!inserts.isEmpty()) {
+                for (long rowId : db.insert(TABLE, inserts)) {
+                    if (rowId == -1) {
+                        throw new SQLException("Unable to insert new songs into " + TABLE);
+                    }
+                }
+            }
+            for (Map.Entry<String, List<String[]>> columnUpdates : updates.entrySet()) {
+                try (SQLiteStatement update = db.compileStatement(
+                        "UPDATE " + TABLE + " SET " + columnUpdates.getKey() + " = ?"
+                        + " WHERE HYMN_TYPE = ? AND HYMN_NUMBER = ? AND QUERY_PARAMS = ?")) {
+                    if (update == null) {
+                        throw new SQLException("Unable to compile update of " + columnUpdates.getKey());
+                    }
+                    for (String[] args : columnUpdates.getValue()) {
+                        for (int i = 0; i < args.length; i++) {
+                            update.bindString(i + 1, args[i]);
+                        }
+                        int count = update.executeUpdateDelete();
+                        if (count == -1) {
+                            throw new SQLException(String.format("Unable to update %s of %s/%s/%s",
+                                                                 columnUpdates.getKey(), args[1], args[2], args[3]));
+                        }
+                        updated += count;
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        // The inserts are counted by the database itself, but compiled statements aren't.
+        db.noteWrites(TABLE, updated);
+        inserts.clear();
+        updates.clear();
+    }
+
+    private Set<String> queryExistingSongs() throws SQLException {
+        Set<String> songs = new HashSet<>();
+        ResultSet resultSet = db.rawQuery("SELECT HYMN_TYPE, HYMN_NUMBER, QUERY_PARAMS FROM " + TABLE);
+        if (resultSet == null) {
+            throw new IllegalArgumentException("existing songs query returned null");
+        }
+        while (resultSet.next()) {
+            String hymnType = resultSet.getString(1);
+            String hymnNumber = resultSet.getString(2);
+            String queryParams = resultSet.getString(3);
+            // NULL never equals a song's key in SQL, so rows with one can't be matched
+            if (hymnType != null && hymnNumber != null && queryParams != null) {
+                songs.add(toSong(hymnType, hymnNumber, queryParams));
+            }
+        }
+        return songs;
+    }
+
+    private static String toSong(String hymnType, String hymnNumber, String queryParams) {
+        return hymnType + '\0' + hymnNumber + '\0' + queryParams;
+    }
+}
@@ -5,11 +5,17 @@ import main.TextUtils;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * The id is parsed once, on construction. An id that doesn't parse only throws when its type or number is asked for.
+ */
 public class H4aKey {
 
     private static final Pattern ID_PATTERN = Pattern.compile("([A-Z]+)([a-z]?\\d+\\D*)");
 
     public final String id;
+    private final HymnType type;
+    private final String number;
+    private HymnalDbKey hymnalDbKey;
 
     public H4aKey(HymnType type, String number) {
         this(type.h4a + number);
@@ -17,22 +23,42 @@ public class H4aKey {
 
     public H4aKey(String id) {
         this.id = id;
+        Matcher matcher = ID_PATTERN.matcher(id);
+        if (matcher.find()) {
+            this.type = HymnType.fromH4a(matcher.group(1));
+            this.number = matcher.group(2);
+        } else {
+            this.type = null;
+            this.number = null;
+        }
     }
 
+    /**
+     * Computed on first use and cached. Keys are canonical and immutable, so a race just computes the same key twice.
+     */
     public HymnalDbKey toHymnalDbKey() {
+        HymnalDbKey hymnalDbKey = this.hymnalDbKey;
+        if (hymnalDbKey == null) {
+            hymnalDbKey = convertToHymnalDbKey();
+            this.hymnalDbKey = hymnalDbKey;
+        }
+        return hymnalDbKey;
+    }
+
+    private HymnalDbKey convertToHymnalDbKey() {
         // Howard Higashi songs in H4a are NS10XX
         if (isHowardHigashi()) {
-            return new HymnalDbKey(HymnType.HOWARD_HIGASHI, Integer.toString(Integer.parseInt(number()) - 1000), null);
+            return HymnalDbKey.of(HymnType.HOWARD_HIGASHI, Integer.toString(Integer.parseInt(number()) - 1000), null);
         }
 
         // Convert Chinese Simplified from "Z" and "ZS" to the appropriate hymnal db version, which is with "?gb=1" query params
         if (type() == HymnType.CHINESE_SIMPLIFIED) {
-            return new HymnalDbKey(HymnType.CHINESE, number(), "?gb=1");
+            return HymnalDbKey.of(HymnType.CHINESE, number(), "?gb=1");
         }
         if (type() == HymnType.CHINESE_SIMPLIFIED_SUPPLEMENT) {
-            return new HymnalDbKey(HymnType.CHINESE_SUPPLEMENT, number(), "?gb=1");
+            return HymnalDbKey.of(HymnType.CHINESE_SUPPLEMENT, number(), "?gb=1");
         }
-        return new HymnalDbKey(type(), number(), null);
+        return HymnalDbKey.of(type(), number(), null);
     }
 
     private boolean isHowardHigashi() {
@@ -50,20 +76,17 @@ public class H4aKey {
     }
 
     public HymnType type() {
-        Matcher matcher = ID_PATTERN.matcher(id);
-        if (!matcher.find()) {
+        if (number == null) {
             throw new IllegalArgumentException("Unable to extract type from " + id);
         }
-        return HymnType.fromH4a(matcher.group(1));
+        return type;
     }
 
     public String number() {
-        Matcher matcher = ID_PATTERN.matcher(id);
-        if (!matcher.find()) {
+        if (number == null) {
             throw new IllegalArgumentException("Unable to extract number from " + id);
         }
-
-        return matcher.group(2);
+        return number;
     }
 
     public boolean isTransliterable() {
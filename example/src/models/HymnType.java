@@ -2,6 +2,9 @@ package models;
 
 import main.TextUtils;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public enum HymnType {
     CLASSIC_HYMN("h", "E"),
     NEW_TUNE("nt", null),
@@ -30,26 +33,31 @@ public enum HymnType {
     // Not sure what ths "R" category is, but it doesn't exist in the database
     UNKNOWN(null, "R");
 
+    private static final Map<String, HymnType> BY_H4A = new HashMap<>();
+    private static final Map<String, HymnType> BY_HYMNAL_DB = new HashMap<>();
+
+    static {
+        // Some prefixes are shared (e.g. "NS" or "S"), in which case the first declared type wins.
+        for (HymnType hymnType : HymnType.values()) {
+            if (hymnType.h4a != null) {
+                BY_H4A.putIfAbsent(hymnType.h4a, hymnType);
+            }
+            if (hymnType.hymnalDb != null) {
+                BY_HYMNAL_DB.putIfAbsent(hymnType.hymnalDb, hymnType);
+            }
+        }
+    }
+
     public final String hymnalDb;
 
     public final String h4a;
 
     public static HymnType fromH4a(String h4a) {
-        for (HymnType hymnType : HymnType.values()) {
-            if (h4a.equals(hymnType.h4a)) {
-                return hymnType;
-            }
-        }
-        return null;
+        return BY_H4A.get(h4a);
     }
 
     public static HymnType fromHymnalDb(String hymnaldb) {
-        for (HymnType hymnType : HymnType.values()) {
-            if (hymnaldb.equals(hymnType.hymnalDb)) {
-                return hymnType;
-            }
-        }
-        return null;
+        return BY_HYMNAL_DB.get(hymnaldb);
     }
 
     HymnType(String hymnalDb, String h4a) {
@@ -2,24 +2,58 @@ package models;
 
 import main.TextUtils;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Keys are canonical: {@link #of} and {@link #extractFromPath} always return the same instance for the same song, so
+ * equality checks almost always short-circuit on identity, and the hash is computed once.
+ */
 public class HymnalDbKey {
 
     private static final Pattern PATH_PATTERN = Pattern.compile("(\\w+)/(c?\\d+[a-z]*)(\\?gb=1)?");
 
+    private static final Map<HymnalDbKey, HymnalDbKey> CANONICAL_KEYS = new ConcurrentHashMap<>();
+    private static final Map<String, HymnalDbKey> PATH_KEYS = new ConcurrentHashMap<>();
+
     public final HymnType hymnType;
     public final String hymnNumber;
     public final String queryParams;
+    private final int hash;
+
+    public static HymnalDbKey of(HymnType hymnType, String hymnNumber, String queryParams) {
+        HymnalDbKey key = new HymnalDbKey(hymnType, hymnNumber, queryParams);
+        HymnalDbKey canonical = CANONICAL_KEYS.putIfAbsent(key, key);
+        return canonical != null ? canonical : key;
+    }
 
-    public HymnalDbKey(HymnType hymnType, String hymnNumber, String queryParams) {
+    private HymnalDbKey(HymnType hymnType, String hymnNumber, String queryParams) {
         assert hymnType != null;
         assert !TextUtils.isEmpty(hymnNumber);
 
         this.hymnType = hymnType;
         this.hymnNumber = hymnNumber;
         this.queryParams = queryParams != null ? queryParams : "";
+        this.hash = hash(hymnType, this.hymnNumber, this.queryParams);
+    }
+
+    /**
+     * Combines the fields and runs the result through a finalizer (from MurmurHash3), so keys that differ only
+     * slightly (e.g. h/12 and h/21) still land in different buckets. Uses the ordinal rather than the enum's identity
+     * hash, so the hash is stable between runs.
+     */
+    private static int hash(HymnType hymnType, String hymnNumber, String queryParams) {
+        int h = hymnType == null ? 0 : hymnType.ordinal();
+        h = 31 * h + hymnNumber.hashCode();
+        h = 31 * h + queryParams.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
     }
 
     public H4aKey toH4aKey() {
@@ -57,7 +91,7 @@ public class HymnalDbKey {
 
     @Override
     public int hashCode() {
-        return hymnType.hashCode() + hymnNumber.hashCode() + queryParams.hashCode();
+        return hash;
     }
 
     @Override
@@ -67,7 +101,7 @@ public class HymnalDbKey {
         }
         if (obj instanceof HymnalDbKey) {
             HymnalDbKey key = (HymnalDbKey) obj;
-            return hymnType == key.hymnType && hymnNumber.equals(key.hymnNumber) && queryParams.equals(key.queryParams);
+            return hash == key.hash && hymnType == key.hymnType && hymnNumber.equals(key.hymnNumber) && queryParams.equals(key.queryParams);
         }
         return false;
     }
@@ -77,37 +111,21 @@ public class HymnalDbKey {
         return hymnType.hymnalDb + "/" + hymnNumber + "/" + queryParams;
     }
 
+    /**
+     * Parses the path with a single match and caches the result, since the same paths show up in many songs' json.
+     */
     public static HymnalDbKey extractFromPath(String path) {
-        HymnType hymnType = extractTypeFromPath(path);
-        String hymnNumber = extractNumberFromPath(path);
-        String queryParam = extractQueryParamFromPath(path);
-        return new HymnalDbKey(hymnType, hymnNumber, queryParam);
-    }
-
-    public static HymnType extractTypeFromPath(String path) {
-        Matcher matcher = PATH_PATTERN.matcher(path);
-        if (!matcher.find()) {
-            throw new IllegalArgumentException("Unable to extract hymn type from " + path);
+        HymnalDbKey key = PATH_KEYS.get(path);
+        if (key != null) {
+            return key;
         }
 
-        return HymnType.fromHymnalDb(matcher.group(1));
-    }
-
-    public static String extractNumberFromPath(String path) {
-        Matcher matcher = PATH_PATTERN.matcher(path);
-        if (!matcher.find()) {
-            throw new IllegalArgumentException("Unable to extract hymn number from " + path);
-        }
-
-        return matcher.group(2);
-    }
-
-    public static String extractQueryParamFromPath(String path) {
         Matcher matcher = PATH_PATTERN.matcher(path);
         if (!matcher.find()) {
-            throw new IllegalArgumentException("Unable to extract query param from " + path);
+            throw new IllegalArgumentException("Unable to extract hymn type from " + path);
         }
-
-        return matcher.group(3);
+        key = of(HymnType.fromHymnalDb(matcher.group(1)), matcher.group(2), matcher.group(3));
+        PATH_KEYS.put(path, key);
+        return key;
     }
 }
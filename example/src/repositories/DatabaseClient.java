@@ -32,10 +32,16 @@ import com.tylersuehr.sql.SQLiteOpenHelper;
  */
 public final class DatabaseClient extends SQLiteOpenHelper implements IDatabaseClient {
 
+    /**
+     * Number of rows written before statistics are refreshed and space is reclaimed on close.
+     */
+    private static final long MAINTENANCE_THRESHOLD = 1000;
+
     private final SQLiteDatabase db;
 
     public DatabaseClient(String name, int version) {
         super(name, version);
+        setMaintenanceThreshold(MAINTENANCE_THRESHOLD);
         this.db = getWritableInstance();
     }
 
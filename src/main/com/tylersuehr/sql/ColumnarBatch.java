@@ -0,0 +1,428 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented batch of query results.
+ *
+ * Rather than creating an object per row, every column of the batch is stored in a primitive
+ * array: integer columns in a long[], real columns in a double[] and everything else as
+ * dictionary-encoded text, an int[] of codes into the column's dictionary.
+ *
+ * A single batch is refilled in place for every chunk of rows of a query, so a {@link Handler}
+ * must copy anything it wants to keep. Dictionary codes however are stable for the whole query,
+ * which turns grouping and counting (i.e. counting hymn types) into indexing an int[] by code.
+ *
+ * SQLite is dynamically typed, so a column can hold values of any type, whatever its declared
+ * type. When a value doesn't fit the type of its column, the column is widened (integer to real,
+ * or either to text) for the rest of the query, converting the rows already in the batch, so a
+ * {@link Handler} should check {@link #getType(int)} on every batch. A column without a declared
+ * type whose first value is null (i.e. an expression) starts out as an integer column, so it
+ * takes the type of its first non-null value.
+ *
+ * @author Tyler Suehr
+ */
+public final class ColumnarBatch {
+    /* Storage type of a column in the batch */
+    public enum Type { LONG, DOUBLE, TEXT }
+
+    /**
+     * Receives each batch of a columnar query, see
+     * {@link SQLiteDatabase#queryColumnar(String, int, Handler)}.
+     */
+    public interface Handler {
+        void onBatch(ColumnarBatch batch);
+    }
+
+    private final String[] names;
+    private final Type[] types;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final int[][] codes;
+    private final boolean[][] nulls;
+    private final List<Map<String, Integer>> dictionaryCodes;
+    private final List<List<String>> dictionaries;
+    private final int capacity;
+    private int size;
+
+
+    ColumnarBatch(String[] names, Type[] types, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Batch capacity must be at least 1!");
+        }
+        this.names = names;
+        this.types = types;
+        this.capacity = capacity;
+        this.longs = new long[names.length][];
+        this.doubles = new double[names.length][];
+        this.codes = new int[names.length][];
+        this.nulls = new boolean[names.length][capacity];
+        this.dictionaryCodes = new ArrayList<>(names.length);
+        this.dictionaries = new ArrayList<>(names.length);
+
+        for (int i = 0; i < names.length; i++) {
+            switch (types[i]) {
+                case LONG:
+                    this.longs[i] = new long[capacity];
+                    break;
+                case DOUBLE:
+                    this.doubles[i] = new double[capacity];
+                    break;
+                default:
+                    this.codes[i] = new int[capacity];
+            }
+            this.dictionaryCodes.add(types[i] == Type.TEXT ? new HashMap<>() : null);
+            this.dictionaries.add(types[i] == Type.TEXT ? new ArrayList<>() : null);
+        }
+    }
+
+    /**
+     * Creates an empty batch for the columns of the given result set.
+     *
+     * @param meta the result set metadata
+     * @param capacity the maximum number of rows per batch
+     * @return the empty batch
+     */
+    static ColumnarBatch create(ResultSetMetaData meta, int capacity) throws SQLException {
+        final int count = meta.getColumnCount();
+        final String[] names = new String[count];
+        final Type[] types = new Type[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = meta.getColumnLabel(i + 1);
+            final int sqlType = meta.getColumnType(i + 1);
+            // Without a declared type, the driver reports the type of the first value, which may be null
+            types[i] = (sqlType == Types.NULL) ? Type.LONG : toType(sqlType);
+        }
+        return new ColumnarBatch(names, types, capacity);
+    }
+
+    /**
+     * Refills this batch with the next rows of the result set.
+     *
+     * @param c the result set to read from
+     * @return true if at least 1 row was read, otherwise false
+     */
+    boolean fill(ResultSet c) throws SQLException {
+        this.size = 0;
+        while (size < capacity && c.next()) {
+            for (int i = 0; i < names.length; i++) {
+                if (types[i] == Type.TEXT) {
+                    final String value = c.getString(i + 1);
+                    this.codes[i][size] = (value != null) ? encode(i, value) : -1;
+                    this.nulls[i][size] = (value == null);
+                } else {
+                    final Object value = c.getObject(i + 1);
+                    this.nulls[i][size] = (value == null);
+                    if (value != null) {
+                        set(i, value, c);
+                    }
+                }
+            }
+            this.size++;
+        }
+        return size > 0;
+    }
+
+    /**
+     * Stores a value in the current row of a numeric column, widening the column first if
+     * the value doesn't fit its type.
+     *
+     * @param column the index of the column
+     * @param value the value, as returned by {@link ResultSet#getObject(int)}
+     * @param c the result set the value was read from
+     */
+    private void set(int column, Object value, ResultSet c) throws SQLException {
+        final boolean integer = (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte);
+        final boolean real = (value instanceof Double || value instanceof Float);
+        if (types[column] == Type.LONG && integer) {
+            this.longs[column][size] = ((Number)value).longValue();
+            return;
+        }
+        if (types[column] == Type.LONG && real && longsAreExactDoubles(column)) {
+            widen(column, Type.DOUBLE);
+        }
+        if (types[column] == Type.DOUBLE && (real || (integer && isExactDouble(((Number)value).longValue())))) {
+            this.doubles[column][size] = ((Number)value).doubleValue();
+            return;
+        }
+        widen(column, Type.TEXT);
+        this.codes[column][size] = encode(column, integer ? Long.toString(((Number)value).longValue())
+                : real ? Double.toString(((Number)value).doubleValue()) : c.getString(column + 1));
+    }
+
+    /**
+     * Changes the type of a column, converting the rows already in this batch.
+     *
+     * @param column the index of the column
+     * @param type the wider type, either {@link Type#DOUBLE} or {@link Type#TEXT}
+     */
+    private void widen(int column, Type type) {
+        if (types[column] == type) {
+            return;
+        }
+        if (type == Type.DOUBLE) {
+            this.doubles[column] = new double[capacity];
+            for (int row = 0; row < size; row++) {
+                this.doubles[column][row] = longs[column][row];
+            }
+        } else {
+            this.codes[column] = new int[capacity];
+            this.dictionaryCodes.set(column, new HashMap<>());
+            this.dictionaries.set(column, new ArrayList<>());
+            for (int row = 0; row < size; row++) {
+                this.codes[column][row] = nulls[column][row] ? -1 : encode(column, (types[column] == Type.LONG)
+                        ? Long.toString(longs[column][row]) : Double.toString(doubles[column][row]));
+            }
+            this.doubles[column] = null;
+        }
+        this.longs[column] = null;
+        this.types[column] = type;
+    }
+
+    private boolean longsAreExactDoubles(int column) {
+        for (int row = 0; row < size; row++) {
+            if (!nulls[column][row] && !isExactDouble(longs[column][row])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isExactDouble(long value) {
+        return (long)(double)value == value && value != Long.MAX_VALUE;
+    }
+
+    /**
+     * Looks up the dictionary code of a value, adding it to the dictionary if needed.
+     *
+     * @param column the index of the text column
+     * @param value the text value
+     * @return the code of the value
+     */
+    int encode(int column, String value) {
+        final Map<String, Integer> index = dictionaryCodes.get(column);
+        final Integer code = index.get(value);
+        if (code != null) {
+            return code;
+        }
+        final List<String> dictionary = dictionaries.get(column);
+        index.put(value, dictionary.size());
+        dictionary.add(value);
+        return dictionary.size() - 1;
+    }
+
+    /**
+     * Gets the number of rows in this batch.
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the maximum number of rows this batch can hold.
+     * @return the capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    public String getColumnName(int column) {
+        return names[column];
+    }
+
+    /**
+     * Finds the index of a column by its name.
+     *
+     * @param name the name of the column
+     * @return the index of the column, or -1 if it doesn't exist
+     */
+    public int getColumnIndex(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public Type getType(int column) {
+        return types[column];
+    }
+
+    /**
+     * Gets the values of a {@link Type#LONG} column.
+     * Only the first {@link #size()} values belong to this batch.
+     *
+     * @param column the index of the column
+     * @return the values of the column
+     */
+    public long[] getLongs(int column) {
+        checkType(column, Type.LONG);
+        return longs[column];
+    }
+
+    /**
+     * Gets the values of a {@link Type#DOUBLE} column.
+     * Only the first {@link #size()} values belong to this batch.
+     *
+     * @param column the index of the column
+     * @return the values of the column
+     */
+    public double[] getDoubles(int column) {
+        checkType(column, Type.DOUBLE);
+        return doubles[column];
+    }
+
+    /**
+     * Gets the dictionary codes of a {@link Type#TEXT} column, null values have a code of -1.
+     * Only the first {@link #size()} codes belong to this batch.
+     *
+     * @param column the index of the column
+     * @return the codes of the column
+     */
+    public int[] getCodes(int column) {
+        checkType(column, Type.TEXT);
+        return codes[column];
+    }
+
+    /**
+     * Gets the number of distinct values seen so far in a {@link Type#TEXT} column.
+     *
+     * @param column the index of the column
+     * @return the size of the column's dictionary
+     */
+    public int getDictionarySize(int column) {
+        checkType(column, Type.TEXT);
+        return dictionaries.get(column).size();
+    }
+
+    /**
+     * Gets the distinct values seen so far in a {@link Type#TEXT} column, indexed by code.
+     *
+     * @param column the index of the column
+     * @return a copy of the column's dictionary
+     */
+    public String[] getDictionary(int column) {
+        checkType(column, Type.TEXT);
+        return dictionaries.get(column).toArray(new String[0]);
+    }
+
+    /**
+     * Decodes a dictionary code of a {@link Type#TEXT} column.
+     *
+     * @param column the index of the column
+     * @param code the dictionary code
+     * @return the value, or null if the code is -1
+     */
+    public String decode(int column, int code) {
+        checkType(column, Type.TEXT);
+        return (code < 0) ? null : dictionaries.get(column).get(code);
+    }
+
+    /**
+     * Gets the value of a column in a row as a string, regardless of its type.
+     *
+     * @param column the index of the column
+     * @param row the index of the row in this batch
+     * @return the value, or null if the value was null
+     */
+    public String getString(int column, int row) {
+        checkRow(row);
+        if (nulls[column][row]) {
+            return null;
+        }
+        switch (types[column]) {
+            case LONG:
+                return Long.toString(longs[column][row]);
+            case DOUBLE:
+                return Double.toString(doubles[column][row]);
+            default:
+                return decode(column, codes[column][row]);
+        }
+    }
+
+    public boolean isNull(int column, int row) {
+        checkRow(row);
+        return nulls[column][row];
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarBatch" + Arrays.toString(names) + Arrays.toString(types) + " size=" + size;
+    }
+
+    private void checkType(int column, Type type) {
+        if (types[column] != type) {
+            throw new IllegalArgumentException("Column " + names[column] + " is " + types[column] + ", not " + type + "!");
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " is not in a batch of " + size + " rows!");
+        }
+    }
+
+    /**
+     * Converts a JDBC column type into the type the batch stores it as.
+     *
+     * @param sqlType the type from {@link java.sql.Types}
+     * @return the storage type
+     */
+    static Type toType(int sqlType) {
+        switch (sqlType) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return Type.LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return Type.DOUBLE;
+            default:
+                return Type.TEXT;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Reads and writes rows as CSV (RFC 4180), one record per row.
+ *
+ * An empty unquoted field is NULL, while a quoted empty field ("") is an empty string.
+ * Fields are quoted when they contain a comma, quote or line break, or are empty.
+ * BLOBs are written as Base64 text.
+ *
+ * @author Tyler Suehr
+ */
+final class CsvCodec {
+    private final Reader in;
+    private int line = 1;
+
+
+    CsvCodec(Reader in) {
+        this.in = in.markSupported() ? in : new BufferedReader(in);
+    }
+
+    /**
+     * Writes a record of values, followed by a line break.
+     *
+     * @param out the writer to write to
+     * @param values the values of the record
+     */
+    static void writeRecord(Writer out, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            final Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            final String s = (value instanceof byte[])
+                    ? Base64.getEncoder().encodeToString((byte[])value) : value.toString();
+            if (needsQuotes(s)) {
+                out.write('"');
+                out.write(s.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(s);
+            }
+        }
+        out.write("\r\n");
+    }
+
+    /**
+     * Reads the next record.
+     * @return the fields of the record (null for NULL fields), or null at the end of input
+     */
+    List<String> readRecord() throws IOException {
+        int c = in.read();
+        if (c == -1) {
+            return null;
+        }
+
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (c == '"' && sb.length() == 0 && !quoted) {
+                quoted = true;
+                readQuoted(sb);
+                c = in.read();
+                if (c != ',' && c != '\r' && c != '\n' && c != -1) {
+                    throw new IOException("Unexpected character after quoted field on line " + line + "!");
+                }
+            }
+            if (c == ',' || c == '\r' || c == '\n' || c == -1) {
+                fields.add((sb.length() == 0 && !quoted) ? null : sb.toString());
+                sb.setLength(0);
+                quoted = false;
+                if (c == ',') {
+                    c = in.read();
+                    continue;
+                }
+                if (c == '\r') {
+                    c = in.read();
+                    if (c != '\n' && c != -1) {
+                        throw new IOException("Expected a line feed after carriage return on line " + line + "!");
+                    }
+                }
+                this.line++;
+                return fields;
+            }
+            if (c == '"') {
+                throw new IOException("Unexpected quote in unquoted field on line " + line + "!");
+            }
+            sb.append((char)c);
+            c = in.read();
+        }
+    }
+
+    /**
+     * Reads the rest of a quoted field, after its opening quote.
+     * @param sb the builder to read the field into
+     */
+    private void readQuoted(StringBuilder sb) throws IOException {
+        while (true) {
+            final int c = in.read();
+            if (c == -1) {
+                throw new IOException("Unterminated quoted field on line " + line + "!");
+            } else if (c == '"') {
+                in.mark(1);
+                if (in.read() != '"') {
+                    in.reset();
+                    return;
+                }
+                sb.append('"');
+            } else {
+                if (c == '\n') {
+                    this.line++;
+                }
+                sb.append((char)c);
+            }
+        }
+    }
+
+    private static boolean needsQuotes(String s) {
+        if (s.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reports what a run of {@link SQLiteDatabase#runMaintenance()} did.
+ *
+ * @author Tyler Suehr
+ */
+public final class MaintenanceReport {
+    private final List<String> analyzedTables;
+    private final long sizeBefore;
+    private final long sizeAfter;
+    private final long freePages;
+    private final long millis;
+
+
+    MaintenanceReport(List<String> analyzedTables, long sizeBefore, long sizeAfter, long freePages, long millis) {
+        this.analyzedTables = Collections.unmodifiableList(analyzedTables);
+        this.sizeBefore = sizeBefore;
+        this.sizeAfter = sizeAfter;
+        this.freePages = freePages;
+        this.millis = millis;
+    }
+
+    /**
+     * Gets the tables whose statistics were refreshed, because they were written to.
+     * @return the analyzed tables
+     */
+    public List<String> getAnalyzedTables() {
+        return analyzedTables;
+    }
+
+    /**
+     * Gets the size of the database before maintenance.
+     * @return the size in bytes
+     */
+    public long getSizeBefore() {
+        return sizeBefore;
+    }
+
+    /**
+     * Gets the size of the database after maintenance.
+     * @return the size in bytes
+     */
+    public long getSizeAfter() {
+        return sizeAfter;
+    }
+
+    /**
+     * Gets the space reclaimed by maintenance.
+     * @return the reclaimed size in bytes
+     */
+    public long getReclaimed() {
+        return Math.max(0, sizeBefore - sizeAfter);
+    }
+
+    /**
+     * Gets the number of unused pages left in the database after maintenance, which
+     * only a full VACUUM can reclaim unless auto_vacuum is INCREMENTAL.
+     * @return the number of free pages
+     */
+    public long getFreePages() {
+        return freePages;
+    }
+
+    /**
+     * Gets the time spent on maintenance.
+     * @return the time in milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    @Override
+    public String toString() {
+        return "Analyzed " + analyzedTables + ", reclaimed " + getReclaimed() + " bytes ("
+                + freePages + " free pages left) in " + millis + "ms";
+    }
+}
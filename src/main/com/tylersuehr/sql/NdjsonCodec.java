@@ -0,0 +1,278 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Base64;
+
+/**
+ * Reads and writes rows as newline-delimited JSON, one flat JSON object per line.
+ *
+ * Integers and reals are written as JSON numbers, text as JSON strings and BLOBs as
+ * Base64 strings. When reading, nested objects and arrays are kept as their JSON text,
+ * so that they can be stored in columns holding JSON.
+ *
+ * @author Tyler Suehr
+ */
+final class NdjsonCodec {
+    private final BufferedReader in;
+    private String text;
+    private int pos;
+    private int line;
+
+
+    NdjsonCodec(Reader in) {
+        this.in = (in instanceof BufferedReader) ? (BufferedReader)in : new BufferedReader(in);
+    }
+
+    /**
+     * Writes a row as a JSON object, followed by a line break.
+     *
+     * @param out the writer to write to
+     * @param columns the names of the columns
+     * @param values the values of the row
+     */
+    static void writeRow(Writer out, String[] columns, Object[] values) throws IOException {
+        out.write('{');
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeString(out, columns[i]);
+            out.write(':');
+
+            final Object value = values[i];
+            if (value == null) {
+                out.write("null");
+            } else if (value instanceof Double || value instanceof Float) {
+                final double d = ((Number)value).doubleValue();
+                out.write(Double.isNaN(d) ? "null" : Double.isInfinite(d) ? (d > 0 ? "1e999" : "-1e999") : value.toString());
+            } else if (value instanceof Number || value instanceof Boolean) {
+                out.write(value.toString());
+            } else if (value instanceof byte[]) {
+                writeString(out, Base64.getEncoder().encodeToString((byte[])value));
+            } else {
+                writeString(out, value.toString());
+            }
+        }
+        out.write("}\n");
+    }
+
+    /**
+     * Reads the next row, skipping blank lines.
+     * @return the values of the row, or null at the end of input
+     */
+    ContentValues readRow() throws IOException {
+        do {
+            this.text = in.readLine();
+            this.line++;
+            if (text == null) {
+                return null;
+            }
+            this.pos = 0;
+            skipWhitespace();
+        } while (pos == text.length());
+
+        final ContentValues values = new ContentValues();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            this.pos++;
+        } else {
+            while (true) {
+                skipWhitespace();
+                final String key = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                putValue(values, key);
+                skipWhitespace();
+                if (peek() == ',') {
+                    this.pos++;
+                } else {
+                    expect('}');
+                    break;
+                }
+            }
+        }
+        skipWhitespace();
+        if (pos != text.length()) {
+            throw error("Unexpected text after object");
+        }
+        return values;
+    }
+
+    private void putValue(ContentValues values, String key) throws IOException {
+        final char c = peek();
+        if (c == '"') {
+            values.put(key, readString());
+        } else if (c == '{' || c == '[') {
+            final int start = pos;
+            skipNested();
+            values.put(key, text.substring(start, pos));
+        } else if (text.startsWith("null", pos)) {
+            this.pos += 4;
+            values.put(key, (String)null);
+        } else if (text.startsWith("true", pos)) {
+            this.pos += 4;
+            values.put(key, true);
+        } else if (text.startsWith("false", pos)) {
+            this.pos += 5;
+            values.put(key, false);
+        } else {
+            final int start = pos;
+            boolean real = false;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                real |= (text.charAt(pos) == '.' || text.charAt(pos) == 'e' || text.charAt(pos) == 'E');
+                this.pos++;
+            }
+            final String number = text.substring(start, pos);
+            try {
+                if (!real) {
+                    try {
+                        values.put(key, Long.parseLong(number));
+                        return;
+                    } catch (NumberFormatException ex) {
+                        // Too large for a long, so store it as a real like SQLite does
+                    }
+                }
+                values.put(key, Double.parseDouble(number));
+            } catch (NumberFormatException ex) {
+                throw error("Invalid value");
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        final StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos >= text.length()) {
+                throw error("Unterminated string");
+            }
+            final char c = text.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            } else if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= text.length()) {
+                throw error("Unterminated string");
+            }
+            final char e = text.charAt(pos++);
+            switch (e) {
+                case '"': case '\\': case '/': sb.append(e); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw error("Invalid unicode escape");
+                    }
+                    try {
+                        sb.append((char)Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("Invalid unicode escape");
+                    }
+                    this.pos += 4;
+                    break;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+    }
+
+    private void skipNested() throws IOException {
+        int depth = 0;
+        do {
+            if (pos >= text.length()) {
+                throw error("Unterminated object or array");
+            }
+            final char c = text.charAt(pos);
+            if (c == '"') {
+                readString();
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+            this.pos++;
+        } while (depth > 0);
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            this.pos++;
+        }
+    }
+
+    private char peek() throws IOException {
+        if (pos >= text.length()) {
+            throw error("Unexpected end of line");
+        }
+        return text.charAt(pos);
+    }
+
+    private void expect(char c) throws IOException {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        this.pos++;
+    }
+
+    private IOException error(String msg) {
+        return new IOException(msg + " at line " + line + ", column " + (pos + 1) + "!");
+    }
+
+    private static void writeString(Writer out, String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                case '\b': out.write("\\b"); break;
+                case '\f': out.write("\\f"); break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int)c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
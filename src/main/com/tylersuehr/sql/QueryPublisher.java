@@ -0,0 +1,187 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the mapped rows of a query to subscribers, as they request them.
+ *
+ * Each subscriber gets its own statement and cursor, which is only advanced as far as the
+ * subscriber has requested. Rows are emitted on the thread that calls
+ * {@link Flow.Subscription#request(long)}. The cursor is closed once all rows are emitted,
+ * on error, or when the subscription is cancelled.
+ *
+ * @author Tyler Suehr
+ */
+final class QueryPublisher<T> implements Flow.Publisher<T> {
+    private final SQLiteDatabase database;
+    private final String sql;
+    private final RowMapper<T> mapper;
+
+
+    QueryPublisher(SQLiteDatabase database, String sql, RowMapper<T> mapper) {
+        this.database = database;
+        this.sql = sql;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null!");
+        }
+        final QuerySubscription subscription = new QuerySubscription(subscriber);
+        subscription.open();
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+
+    /**
+     * Subscription that drains the cursor according to the subscriber's demand.
+     */
+    private final class QuerySubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private boolean acquired;
+        private Statement statement;
+        private ResultSet cursor;
+
+
+        QuerySubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("Must request a positive number of rows, not " + n + "!");
+                this.cancelled = true;
+            } else {
+                this.requested.getAndUpdate(r -> (r + n < 0) ? Long.MAX_VALUE : r + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            drain();
+        }
+
+        /**
+         * Opens the cursor for this subscription, pinning the database until it's closed.
+         */
+        void open() {
+            try {
+                database.acquireReference();
+                this.acquired = true;
+                this.statement = database.createStatement();
+                this.cursor = statement.executeQuery(sql);
+            } catch (SQLException|RuntimeException ex) {
+                this.error = ex;
+                this.cancelled = true;
+            }
+        }
+
+        /**
+         * Emits as many rows as have been requested, making sure only one thread emits at a time.
+         */
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    finish(error);
+                    return;
+                }
+                if (requested.get() > 0) {
+                    final long r = requested.get();
+                    long emitted = 0;
+                    try {
+                        while (emitted != r) {
+                            if (cancelled) {
+                                finish(error);
+                                return;
+                            }
+                            if (!cursor.next()) {
+                                finish(null);
+                                this.subscriber.onComplete();
+                                return;
+                            }
+                            this.subscriber.onNext(mapper.map(cursor));
+                            emitted++;
+                        }
+                    } catch (SQLException|RuntimeException ex) {
+                        this.cancelled = true;
+                        finish(ex);
+                        return;
+                    }
+                    this.requested.addAndGet(-emitted);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Closes the cursor and statement, and reports the error if there was one.
+         * @param ex the error, or null
+         */
+        private void finish(Throwable ex) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (cursor != null) {
+                    this.cursor.close();
+                }
+                if (statement != null) {
+                    this.statement.close();
+                }
+            } catch (SQLException closeEx) {
+                database.logException(closeEx);
+            } finally {
+                if (acquired) {
+                    database.releaseReference();
+                }
+            }
+            if (ex != null) {
+                this.subscriber.onError(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * Determines how a statement is retried when the database is locked by another
+ * connection or process.
+ *
+ * Retries are delayed using exponential backoff with full jitter: the nth retry waits a
+ * random time between 0 and min(maxDelay, baseDelay * 2^n). This spreads out competing
+ * writers, so contention slows them down rather than making them fail.
+ *
+ * @author Tyler Suehr
+ */
+public final class RetryPolicy {
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+
+    /**
+     * Constructs a new retry policy.
+     *
+     * @param maxAttempts the maximum number of attempts, including the first
+     * @param baseDelayMillis the upper bound of the first retry's delay
+     * @param maxDelayMillis the upper bound of any retry's delay
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Must allow at least 1 attempt!");
+        }
+        if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Delays must satisfy 0 <= base <= max!");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Gets the maximum number of attempts, including the first.
+     * @return the maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Gets the upper bound of the delay before a retry, before jitter is applied.
+     *
+     * @param retry the 0-based number of the retry
+     * @return the upper bound of the delay in milliseconds
+     */
+    public long getBackoff(int retry) {
+        if (retry >= 62 || baseDelayMillis > (maxDelayMillis >> retry)) {
+            return maxDelayMillis;
+        }
+        return Math.min(maxDelayMillis, baseDelayMillis << retry);
+    }
+
+    /**
+     * Gets the delay before a retry, with full jitter applied.
+     *
+     * @param retry the 0-based number of the retry
+     * @param random the source of jitter
+     * @return the delay in milliseconds
+     */
+    public long getDelay(int retry, Random random) {
+        final long backoff = getBackoff(retry);
+        return (backoff == 0) ? 0 : (long)(random.nextDouble() * (backoff + 1));
+    }
+
+    /**
+     * Determines if a statement failed because the database or a table was locked, in
+     * which case retrying it may succeed.
+     *
+     * @param ex the exception thrown by the statement
+     * @return true if the statement can be retried, otherwise false
+     */
+    public static boolean isRetryable(SQLException ex) {
+        final int code = ex.getErrorCode() & 0xff;
+        if (code == SQLITE_BUSY || code == SQLITE_LOCKED) {
+            return true;
+        }
+        final String msg = ex.getMessage();
+        return msg != null && (msg.contains("SQLITE_BUSY")
+                || msg.contains("SQLITE_LOCKED")
+                || msg.contains("database is locked")
+                || msg.contains("database table is locked"));
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a mapper for each class annotated with {@link Entity} at compile time.
+ *
+ * The generated mapper reads each {@link Column} with the typed getter of the cursor,
+ * using column indexes resolved on the first row of each cursor, and writes them back
+ * with the typed put of {@link ContentValues}. This avoids reflection and per-row
+ * column lookups when mapping many rows.
+ *
+ * Supported field types are String, byte[], and the primitive types int, long, short,
+ * double, float and boolean, or their boxed types (which map SQL NULL to null).
+ *
+ * @author Tyler Suehr
+ */
+@SupportedAnnotationTypes({"com.tylersuehr.sql.Entity", "com.tylersuehr.sql.Column"})
+public final class RowMapperProcessor extends AbstractProcessor {
+    private static final Map<String, String> GETTERS = new HashMap<>();
+    static {
+        GETTERS.put("java.lang.String", "getString");
+        GETTERS.put("byte[]", "getBytes");
+        GETTERS.put("int", "getInt");
+        GETTERS.put("long", "getLong");
+        GETTERS.put("short", "getShort");
+        GETTERS.put("double", "getDouble");
+        GETTERS.put("float", "getFloat");
+        GETTERS.put("boolean", "getBoolean");
+        GETTERS.put("java.lang.Integer", "getInt");
+        GETTERS.put("java.lang.Long", "getLong");
+        GETTERS.put("java.lang.Short", "getShort");
+        GETTERS.put("java.lang.Double", "getDouble");
+        GETTERS.put("java.lang.Float", "getFloat");
+        GETTERS.put("java.lang.Boolean", "getBoolean");
+    }
+
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Entity.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@Entity can only be used on classes!");
+                continue;
+            }
+            final TypeElement type = (TypeElement)element;
+            final List<Property> properties = collectProperties(type);
+            if (properties == null) {
+                continue;
+            }
+            try {
+                writeMapper(type, properties);
+            } catch (IOException ex) {
+                error(type, "Could not write the mapper: " + ex.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the mapped properties of an entity, reporting any that can't be mapped.
+     *
+     * @param type the entity
+     * @return the properties in declaration order, or null if any can't be mapped
+     */
+    private List<Property> collectProperties(TypeElement type) {
+        boolean valid = hasNoArgConstructor(type);
+        if (!valid) {
+            error(type, "@Entity needs a no-argument constructor that isn't private!");
+        }
+
+        final List<ExecutableElement> methods = ElementFilter.methodsIn(type.getEnclosedElements());
+        final List<Property> properties = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            final Column column = field.getAnnotation(Column.class);
+            if (column == null) {
+                continue;
+            }
+            final String typeName = field.asType().toString();
+            final String name = field.getSimpleName().toString();
+            if (!GETTERS.containsKey(typeName)) {
+                error(field, "@Column doesn't support fields of type " + typeName + "!");
+                valid = false;
+                continue;
+            }
+            if (field.getModifiers().contains(Modifier.STATIC)) {
+                error(field, "@Column can't be used on static fields!");
+                valid = false;
+                continue;
+            }
+
+            final Property property = new Property(column.value().isEmpty() ? name : column.value(), typeName);
+            if (field.getModifiers().contains(Modifier.PRIVATE)) {
+                final String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                final String getter = (typeName.equals("boolean") && findMethod(methods, "is" + suffix, 0) != null)
+                        ? "is" + suffix : "get" + suffix;
+                if (findMethod(methods, getter, 0) == null || findMethod(methods, "set" + suffix, 1) == null) {
+                    error(field, "Private @Column fields need a " + getter + "() and set" + suffix + "(...) method!");
+                    valid = false;
+                    continue;
+                }
+                property.read = getter + "()";
+                property.write = "set" + suffix + "(%s)";
+            } else if (field.getModifiers().contains(Modifier.FINAL)) {
+                error(field, "@Column can't be used on final fields!");
+                valid = false;
+                continue;
+            } else {
+                property.read = name;
+                property.write = name + " = %s";
+            }
+            properties.add(property);
+        }
+        return valid ? properties : null;
+    }
+
+    /**
+     * Writes the source of the mapper for an entity.
+     *
+     * @param type the entity
+     * @param properties the mapped properties of the entity
+     */
+    private void writeMapper(TypeElement type, List<Property> properties) throws IOException {
+        final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        final String entity = type.getQualifiedName().toString();
+        final String mapper = getMapperName(type);
+
+        final StringBuilder sb = new StringBuilder(1024);
+        if (!pkg.isUnnamed()) {
+            sb.append("package ").append(pkg.getQualifiedName()).append(";\n\n");
+        }
+        sb.append("import com.tylersuehr.sql.ContentValues;\n");
+        sb.append("import com.tylersuehr.sql.RowMapper;\n");
+        sb.append("import java.sql.ResultSet;\n");
+        sb.append("import java.sql.SQLException;\n\n");
+        sb.append("/**\n");
+        sb.append(" * Maps rows to {@link ").append(entity).append("}, generated from its @Column fields.\n");
+        sb.append(" *\n");
+        sb.append(" * Column indexes are resolved on the first row of each cursor, so a mapper shouldn't be\n");
+        sb.append(" * shared by threads mapping different cursors at the same time.\n");
+        sb.append(" */\n");
+        sb.append("public final class ").append(mapper).append(" implements RowMapper<").append(entity).append("> {\n");
+        sb.append("    private static final String[] COLUMNS = {");
+        for (int i = 0; i < properties.size(); i++) {
+            sb.append((i > 0) ? ", " : " ").append(quote(properties.get(i).column));
+        }
+        sb.append(" };\n");
+        sb.append("    private final int[] indexes = new int[COLUMNS.length];\n");
+        sb.append("    private ResultSet cursor;\n\n\n");
+
+        sb.append("    @Override\n");
+        sb.append("    public ").append(entity).append(" map(ResultSet row) throws SQLException {\n");
+        sb.append("        if (row != cursor || row.getRow() <= 1) {\n");
+        sb.append("            for (int i = 0; i < COLUMNS.length; i++) {\n");
+        sb.append("                this.indexes[i] = row.findColumn(COLUMNS[i]);\n");
+        sb.append("            }\n");
+        sb.append("            this.cursor = row;\n");
+        sb.append("        }\n\n");
+        sb.append("        final ").append(entity).append(" obj = new ").append(entity).append("();\n");
+        for (int i = 0; i < properties.size(); i++) {
+            final Property property = properties.get(i);
+            String value = "row." + GETTERS.get(property.type) + "(indexes[" + i + "])";
+            if (property.type.startsWith("java.lang.") && !property.type.equals("java.lang.String")) {
+                sb.append("        final ").append(property.type).append(" value").append(i).append(" = ").append(value).append(";\n");
+                value = "row.wasNull() ? null : value" + i;
+            }
+            sb.append("        obj.").append(String.format(property.write, value)).append(";\n");
+        }
+        sb.append("        return obj;\n");
+        sb.append("    }\n\n");
+
+        sb.append("    /**\n");
+        sb.append("     * Binds the @Column fields of an object to content values.\n");
+        sb.append("     * @param obj the object\n");
+        sb.append("     * @return the content values, in the order of the fields\n");
+        sb.append("     */\n");
+        sb.append("    public ContentValues toContentValues(").append(entity).append(" obj) {\n");
+        sb.append("        final ContentValues values = new ContentValues(").append(properties.size()).append(");\n");
+        for (Property property : properties) {
+            sb.append("        values.put(").append(quote(property.column)).append(", obj.").append(property.read).append(");\n");
+        }
+        sb.append("        return values;\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        final String qualified = pkg.isUnnamed() ? mapper : pkg.getQualifiedName() + "." + mapper;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualified, type).openWriter()) {
+            writer.write(sb.toString());
+        }
+    }
+
+    /**
+     * Gets the name of the generated mapper for an entity (i.e. SongMapper for Song, or
+     * Book_SongMapper for a class Song nested in Book).
+     *
+     * @param type the entity
+     * @return the simple name of the mapper
+     */
+    static String getMapperName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        Element outer = type.getEnclosingElement();
+        while (outer instanceof TypeElement) {
+            name = outer.getSimpleName() + "_" + name;
+            outer = outer.getEnclosingElement();
+        }
+        return name + "Mapper";
+    }
+
+    private static boolean hasNoArgConstructor(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+        for (ExecutableElement ctor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (ctor.getParameters().isEmpty() && !ctor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ExecutableElement findMethod(List<ExecutableElement> methods, String name, int params) {
+        for (ExecutableElement method : methods) {
+            if (method.getSimpleName().contentEquals(name)
+                    && method.getParameters().size() == params
+                    && !method.getModifiers().contains(Modifier.PRIVATE)
+                    && (params > 0 || method.getReturnType().getKind() != TypeKind.VOID)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void error(Element element, String msg) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, element);
+    }
+
+
+    /**
+     * A field of an entity mapped to a column.
+     */
+    private static final class Property {
+        private final String column;
+        private final String type;
+        private String read;
+        private String write;
+
+
+        Property(String column, String type) {
+            this.column = column;
+            this.type = type;
+        }
+    }
+}
@@ -23,6 +23,7 @@
  */
 
 package com.tylersuehr.sql;
+import java.util.Collection;
 
 /**
  * Utility to help construct SQL queries and commands.
@@ -40,6 +41,17 @@ final class SQLBuilder {
         return sb.toString();
     }
 
+    // SELECT * FROM [schema].[table] WHERE [col] = value ORDER BY [col] LIMIT 0;
+    static String createSchemaQuery(String schema, String table, String selection, String order, String limit) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("SELECT * FROM ").append("[").append(schema).append("].[").append(table).append("]");
+        sb.append(selection != null ? " WHERE " + selection : "");
+        sb.append(order != null ? " ORDER BY " + order : "");
+        sb.append(limit != null ? " LIMIT " + limit : "");
+        sb.append(";");
+        return sb.toString();
+    }
+
     // SELECT ([col1],[col2],[col3]) FROM [table] WHERE [col] = value ORDER BY [col] LIMIT 0;
     static String createQuery(String table, String[] cols, String selection, String order, String limit) {
         final StringBuilder sb = new StringBuilder();
@@ -94,6 +106,27 @@ final class SQLBuilder {
         return sb.toString();
     }
 
+    // INSERT INTO [table] ([col1],[col2],[col3]) VALUES (?,?,?);
+    static String createInsertStatement(String table, Collection<String> cols) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("INSERT INTO ");
+        sb.append("[").append(table).append("] (");
+
+        int i = 0;
+        for (String col : cols) {
+            sb.append((i > 0) ? "," : "");
+            sb.append("[").append(col).append("]");
+            i++;
+        }
+        sb.append(") VALUES (");
+
+        for (i = 0; i < cols.size(); i++) {
+            sb.append((i > 0) ? ",?" : "?");
+        }
+        sb.append(");");
+        return sb.toString();
+    }
+
     // UPDATE [table] SET [col1] = 'test' WHERE [col2] = 3;
     static String createUpdate(String table, ContentValues values, String selection) {
         final StringBuilder sb = new StringBuilder(120);
@@ -120,6 +153,106 @@ final class SQLBuilder {
         return sb.toString();
     }
 
+    // SELECT [key1],[key2],* FROM [table] WHERE rowid BETWEEN ? AND ?;
+    static String createChecksumQuery(String table, String[] keyColumns, boolean ranged) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("SELECT ");
+        for (String col : keyColumns) {
+            sb.append("[").append(col).append("],");
+        }
+        sb.append("* FROM [").append(table).append("]");
+        sb.append(ranged ? " WHERE rowid BETWEEN ? AND ?" : "");
+        sb.append(";");
+        return sb.toString();
+    }
+
+    // ANALYZE [table];
+    static String createAnalyze(String table) {
+        return "ANALYZE [" + table + "];";
+    }
+
+    // ATTACH DATABASE ? AS [alias];
+    static String createAttach(String alias) {
+        return "ATTACH DATABASE ? AS [" + alias + "];";
+    }
+
+    // DETACH DATABASE [alias];
+    static String createDetach(String alias) {
+        return "DETACH DATABASE [" + alias + "];";
+    }
+
+    // UPDATE [table] SET [col]=json_set([col],?,json(?)) WHERE [col2] = 3;
+    static String createJsonUpdate(String table, String column, String function, String selection) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("UPDATE ");
+        sb.append("[").append(table).append("]");
+        sb.append(" SET [").append(column).append("]=");
+        sb.append(function).append("([").append(column).append("],?");
+        sb.append(function.equals("json_remove") ? "" : ",json(?)");
+        sb.append(")");
+        sb.append(selection != null ? " WHERE " + selection : "");
+        sb.append(";");
+        return sb.toString();
+    }
+
+    // UPDATE [table] SET [col]=json_insert([col],?||'['||json_array_length([col],?)||']',json(?)) WHERE json_type([col],?)='array' AND ([col2] = 3);
+    static String createJsonAppend(String table, String column, String selection) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("UPDATE ");
+        sb.append("[").append(table).append("]");
+        sb.append(" SET [").append(column).append("]=");
+        sb.append("json_insert([").append(column).append("],");
+        sb.append("?||'['||json_array_length([").append(column).append("],?)||']',json(?))");
+        sb.append(" WHERE json_type([").append(column).append("],?)='array'");
+        sb.append(selection != null ? " AND (" + selection + ")" : "");
+        sb.append(";");
+        return sb.toString();
+    }
+
+    // SELECT [table].*,json_each.[key],json_each.[value] FROM [table],json_each([table].[col],?) WHERE [col2] = 3;
+    static String createJsonEach(String table, String column, String selection) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("SELECT [").append(table).append("].*,json_each.[key],json_each.[value] FROM ");
+        sb.append("[").append(table).append("],");
+        sb.append("json_each([").append(table).append("].[").append(column).append("],?)");
+        sb.append(selection != null ? " WHERE " + selection : "");
+        sb.append(";");
+        return sb.toString();
+    }
+
+    // ALTER TABLE [table] ADD COLUMN [col] TEXT GENERATED ALWAYS AS (expression) VIRTUAL;
+    static String createAddGeneratedColumn(String table, String column, String type, String expression) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("ALTER TABLE ");
+        sb.append("[").append(table).append("]");
+        sb.append(" ADD COLUMN [").append(column).append("]");
+        sb.append(type != null ? " " + type : "");
+        sb.append(" GENERATED ALWAYS AS (").append(expression).append(") VIRTUAL;");
+        return sb.toString();
+    }
+
+    // CREATE INDEX IF NOT EXISTS [index] ON [table] ([col1],json_extract([col2],'$.name'));
+    static String createIndex(String index, String table, boolean unique, String... expressions) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(unique ? "CREATE UNIQUE INDEX" : "CREATE INDEX");
+        sb.append(" IF NOT EXISTS [").append(index).append("] ON ");
+        sb.append("[").append(table).append("] (");
+
+        int i = 0;
+        for (String e : expressions) {
+            sb.append((i > 0) ? "," : "");
+            sb.append(e);
+            i++;
+        }
+        sb.append(");");
+        return sb.toString();
+    }
+
+    // json_extract([col],'$.data[0].path')
+    static String createJsonExtract(String column, String path) {
+        return "json_extract([" + column + "],'" + path.replace("'", "''") + "')";
+    }
+
     // DELETE FROM [table] WHERE [col1] = 23;
     static String createDelete(String table, String selection) {
         final StringBuilder sb = new StringBuilder();
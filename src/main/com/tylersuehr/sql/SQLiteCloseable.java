@@ -24,6 +24,7 @@
 
 package com.tylersuehr.sql;
 import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -32,17 +33,26 @@ import java.util.concurrent.atomic.AtomicInteger;
  * This prevents a thread from actually closing the database while another thread may
  * still be using it. This will close itself after the last reference has been released.
  *
+ * The object starts with a single reference held by its owner, which is released by
+ * {@link #close()}; closing more than once has no further effect. Once closed, no new
+ * reference can be acquired, while references that are already held can still be used
+ * until they are released. This lets other threads finish up safely, without anything
+ * starting to use the object after it was closed.
+ *
  * {@link #onAllReferencesReleased()} is called when the last reference is released.
  *
  * @author Tyler Suehr
  */
 abstract class SQLiteCloseable implements Closeable {
-    private final AtomicInteger refs = new AtomicInteger(0);
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean();
 
 
     @Override
     public final void close() {
-        releaseReference();
+        if (closed.compareAndSet(false, true)) {
+            releaseReference();
+        }
     }
 
     /**
@@ -53,9 +63,16 @@ abstract class SQLiteCloseable implements Closeable {
 
     /**
      * Acquires a reference to this object.
+     * @throws IllegalStateException if this object was already closed
      */
     protected final void acquireReference() {
-        this.refs.getAndIncrement();
+        int count;
+        do {
+            count = refs.get();
+            if (count <= 0 || closed.get()) {
+                throw new IllegalStateException("Cannot acquire a reference to an object that was closed!");
+            }
+        } while (!refs.compareAndSet(count, count + 1));
     }
 
     /**
@@ -78,4 +95,20 @@ abstract class SQLiteCloseable implements Closeable {
     protected final boolean hasReference() {
         return refs.get() > 0;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the number of references to this object, including that of its owner.
+     * @return the number of references
+     */
+    final int getReferenceCount() {
+        return refs.get();
+    }
+
+    /**
+     * Determines if the owner has closed this object. Other references may still be held.
+     * @return true if closed, otherwise false
+     */
+    protected final boolean isClosed() {
+        return closed.get();
+    }
+}
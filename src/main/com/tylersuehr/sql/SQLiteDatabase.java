@@ -23,11 +23,36 @@
  */
 
 package com.tylersuehr.sql;
+import org.sqlite.Function;
+import org.sqlite.SQLiteConfig;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The SQLite database itself.
@@ -38,19 +63,52 @@ import java.sql.Statement;
  *
  * The following operations are supported:
  * (1) Insert data into the database. {@link #insert(String, ContentValues)}
+ *     Insert many rows at once. {@link #insert(String, List)}
  * (2) Update data in the database. {@link #update(String, ContentValues, String)}
  * (3) Delete data in the database. {@link #delete(String, String)}
  * (4) Query data in the database. {@link #query(String, String, String, String)}
  * (5) Raw query data in the database. {@link #rawQuery(String)}
  * (6) Raw command on the database. {@link #execSql(String)}
+ * (7) Query data in column-oriented batches. {@link #queryColumnar(String, int, ColumnarBatch.Handler)}
+ * (8) Pre-compile a statement to execute repeatedly. {@link #compileStatement(String)}
+ * (9) Register a Java-implemented SQL function. {@link #createFunction(String, Function)}
+ * (10) Modify JSON stored in a column in place. {@link #jsonSet(String, String, String, String, String)}
+ * (11) Stream mapped rows to subscribers on demand. {@link #queryPublisher(String, RowMapper)}
+ * (12) Attach another database file to join across. {@link #attach(Path, String)}
+ * (13) Refresh statistics and reclaim space after writes. {@link #runMaintenance()}
+ * (14) Export and import tables as CSV or NDJSON. {@link #exportTable(String, Writer, TableFormat)}
+ * (15) Checksum a table, or diff it against another database. {@link #diff(SQLiteDatabase, String, String...)}
+ * (16) Lease a handle with its own statement for a thread or task. {@link #lease()}
+ * (17) Group many writes into one transaction. {@link #beginTransaction()}
+ *
+ * Once closed, the database can't be used anymore, but the connection is only closed
+ * after every lease, compiled statement and subscription still using it has finished.
+ *
+ * When several connections or processes share the database file, statements may fail
+ * because the database is locked. {@link #setBusyTimeout(int)} makes SQLite itself wait
+ * for the lock, and {@link #setRetryPolicy(RetryPolicy)} retries the whole statement with
+ * backoff. Long statements can be cancelled with {@link #interrupt()}, or automatically
+ * with {@link #setStatementTimeout(long)}.
  *
  * @author Tyler Suehr
  */
 public final class SQLiteDatabase extends SQLiteCloseable {
     private static final String DRIVER = "org.sqlite.JDBC";
     private static final String PATH = "jdbc:sqlite:";
+    private static final int IMPORT_BATCH_SIZE = 500;
+    private static final int CHECKSUM_MIN_RANGE = 10000;
+    private String path;
     private Connection connection;
     private Statement statement;
+    private PreparedStatement lastInsertRowId;
+    private PreparedStatement jsonEach;
+    private volatile RetryPolicy retryPolicy;
+    private volatile long statementTimeoutMillis;
+    private int transactionDepth;
+    private boolean transactionSuccessful;
+    private boolean transactionFailed;
+    private final Map<String, Long> writes = new ConcurrentHashMap<>();
+    final DatabaseStats stats = new DatabaseStats();
 
 
     SQLiteDatabase(String dbName) {
@@ -60,6 +118,12 @@ public final class SQLiteDatabase extends SQLiteCloseable {
     @Override
     protected void onAllReferencesReleased() {
         try {
+            if (lastInsertRowId != null) {
+                this.lastInsertRowId.close();
+            }
+            if (jsonEach != null) {
+                this.jsonEach.close();
+            }
             if (statement != null) {
                 this.statement.close();
             }
@@ -85,7 +149,30 @@ public final class SQLiteDatabase extends SQLiteCloseable {
         acquireReference();
         try {
             final String SQL = SQLBuilder.createQuery(table, selection, order, limit);
-            return statement.executeQuery(SQL);
+            return execute(() -> statement.executeQuery(SQL));
+        } catch (SQLException ex) {
+            logException(ex);
+            return null;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Queries data from a table in an attached database, or in "main" for this database.
+     *
+     * @param schema the alias of the attached database
+     * @param table the name of the table to query
+     * @param selection the WHERE clause (i.e. "[id]=12")
+     * @param order the ORDER BY clause (i.e. "[timestamp ASC]")
+     * @param limit the LIMIT clause (i.e. "4")
+     * @return the results
+     */
+    public ResultSet query(String schema, String table, String selection, String order, String limit) {
+        acquireReference();
+        try {
+            final String SQL = SQLBuilder.createSchemaQuery(schema, table, selection, order, limit);
+            return execute(() -> statement.executeQuery(SQL));
         } catch (SQLException ex) {
             logException(ex);
             return null;
@@ -99,15 +186,58 @@ public final class SQLiteDatabase extends SQLiteCloseable {
      *
      * @param table the name of the table
      * @param values the content to be inserted
+     * @return the rowid of the inserted row, or -1 if nothing was inserted
      */
-    public void insert(String table, ContentValues values) {
+    public long insert(String table, ContentValues values) {
         acquireReference();
         try {
             final String SQL = SQLBuilder.createInsert(table, values);
-            this.statement.executeUpdate(SQL);
-            this.connection.commit();
+            return execute(() -> {
+                if (statement.executeUpdate(SQL) == 0) {
+                    return -1L;
+                }
+                final long rowId = lastInsertRowId();
+                commit();
+                noteWrites(table, 1);
+                return rowId;
+            });
+        } catch (SQLException ex) {
+            logException(ex);
+            rollback();
+            return -1;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Convenience method for inserting many rows into the SQLite database at once.
+     *
+     * Unlike {@link #insert(String, ContentValues)}, the values are bound as arguments of a
+     * compiled statement rather than written into the SQL, so they must not be escaped. The
+     * statement is only re-compiled when the columns change from one row to the next, and
+     * all rows are committed together; if any row fails, none of them are inserted.
+     *
+     * @param table the name of the table
+     * @param rows the content to be inserted, one per row
+     * @return the rowids of the inserted rows, or -1 for each row that wasn't inserted
+     */
+    public long[] insert(String table, List<ContentValues> rows) {
+        acquireReference();
+        try {
+            final long[] rowIds = execute(() -> {
+                final long[] inserted = insertAll(table, rows);
+                commit();
+                return inserted;
+            });
+            noteWrites(table, rows.size());
+            return rowIds;
         } catch (SQLException ex) {
             logException(ex);
+            rollback();
+            final long[] rowIds = new long[rows.size()];
+            Arrays.fill(rowIds, -1);
+            return rowIds;
         } finally {
             releaseReference();
         }
@@ -124,10 +254,15 @@ public final class SQLiteDatabase extends SQLiteCloseable {
         acquireReference();
         try {
             final String SQL = SQLBuilder.createUpdate(table, values, selection);
-            this.statement.executeUpdate(SQL);
-            this.connection.commit();
+            final int count = execute(() -> {
+                final int changed = statement.executeUpdate(SQL);
+                commit();
+                return changed;
+            });
+            noteWrites(table, count);
         } catch (SQLException ex) {
             logException(ex);
+            rollback();
         } finally {
             releaseReference();
         }
@@ -143,10 +278,108 @@ public final class SQLiteDatabase extends SQLiteCloseable {
         acquireReference();
         try {
             final String SQL = SQLBuilder.createDelete(table, selection);
-            this.statement.executeUpdate(SQL);
-            this.connection.commit();
+            final int count = execute(() -> {
+                final int changed = statement.executeUpdate(SQL);
+                commit();
+                return changed;
+            });
+            noteWrites(table, count);
+        } catch (SQLException ex) {
+            logException(ex);
+            rollback();
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Inserts a value into the JSON stored in a column, without overwriting an existing value
+     * at that path. The JSON is modified by SQLite itself, without reading it into Java.
+     *
+     * The JSON helpers need SQLite 3.9 or newer, built with the JSON1 extension.
+     *
+     * @param table the name of the table
+     * @param column the column holding the JSON
+     * @param path the JSON path to insert at (i.e. "$.name")
+     * @param json the JSON value to insert (i.e. {"path":"/en/hymn/h/1"} or a quoted "text")
+     * @param selection the WHERE clause
+     * @return the number of rows changed, or -1 if the command failed
+     */
+    public int jsonInsert(String table, String column, String path, String json, String selection) {
+        return updateJson(table, SQLBuilder.createJsonUpdate(table, column, "json_insert", selection), path, json);
+    }
+
+    /**
+     * Sets a value in the JSON stored in a column, overwriting any existing value at that path.
+     *
+     * @param table the name of the table
+     * @param column the column holding the JSON
+     * @param path the JSON path to set (i.e. "$.name")
+     * @param json the JSON value to set
+     * @param selection the WHERE clause
+     * @return the number of rows changed, or -1 if the command failed
+     */
+    public int jsonSet(String table, String column, String path, String json, String selection) {
+        return updateJson(table, SQLBuilder.createJsonUpdate(table, column, "json_set", selection), path, json);
+    }
+
+    /**
+     * Removes a value from the JSON stored in a column.
+     *
+     * @param table the name of the table
+     * @param column the column holding the JSON
+     * @param path the JSON path to remove (i.e. "$.data[0]")
+     * @param selection the WHERE clause
+     * @return the number of rows changed, or -1 if the command failed
+     */
+    public int jsonRemove(String table, String column, String path, String selection) {
+        return updateJson(table, SQLBuilder.createJsonUpdate(table, column, "json_remove", selection), path);
+    }
+
+    /**
+     * Appends a value to the end of a JSON array stored in a column (i.e. adding a Datum to
+     * "$.data"). Rows where the path isn't an array are left unchanged, and not counted.
+     *
+     * @param table the name of the table
+     * @param column the column holding the JSON
+     * @param arrayPath the JSON path of the array (i.e. "$.data")
+     * @param json the JSON value to append
+     * @param selection the WHERE clause
+     * @return the number of rows changed, or -1 if the command failed
+     */
+    public int jsonAppend(String table, String column, String arrayPath, String json, String selection) {
+        return updateJson(table, SQLBuilder.createJsonAppend(table, column, selection), arrayPath, arrayPath, json,
+                arrayPath);
+    }
+
+    /**
+     * Queries the rows of a table joined with each element of the JSON stored in a column.
+     *
+     * Each result has all the columns of the table, followed by the "key" and "value" of
+     * one element of the JSON found at the path. This allows filtering rows by what their
+     * JSON contains (i.e. "json_extract(json_each.[value],'$.path') LIKE '%/h/1351'" on the
+     * elements of "$.data").
+     *
+     * Calling this again closes the results of the previous call.
+     *
+     * @param table the name of the table
+     * @param column the column holding the JSON
+     * @param path the JSON path to iterate over (i.e. "$.data")
+     * @param selection the WHERE clause
+     * @return the results
+     */
+    public ResultSet jsonEach(String table, String column, String path, String selection) {
+        acquireReference();
+        try {
+            if (jsonEach != null) {
+                this.jsonEach.close();
+            }
+            this.jsonEach = connection.prepareStatement(SQLBuilder.createJsonEach(table, column, selection));
+            this.jsonEach.setString(1, path);
+            return jsonEach.executeQuery();
         } catch (SQLException ex) {
             logException(ex);
+            return null;
         } finally {
             releaseReference();
         }
@@ -161,7 +394,55 @@ public final class SQLiteDatabase extends SQLiteCloseable {
     public ResultSet rawQuery(String sql) {
         acquireReference();
         try {
-            return statement.executeQuery(sql);
+            return execute(() -> statement.executeQuery(sql));
+        } catch (SQLException ex) {
+            logException(ex);
+            return null;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Queries data from the SQLite database using a raw SQL query, handing the results
+     * over in column-oriented batches instead of row by row.
+     *
+     * Each batch holds up to batchSize rows in primitive arrays, and is reused for the
+     * next batch once the handler returns. This is suited to analytic passes over a whole
+     * table (i.e. counting or auditing values), which otherwise create objects per row.
+     *
+     * The query runs on its own statement, so results of other queries stay open.
+     *
+     * @param sql the SQL query to run
+     * @param batchSize the maximum number of rows per batch
+     * @param handler the handler to receive each batch
+     */
+    public void queryColumnar(String sql, int batchSize, ColumnarBatch.Handler handler) {
+        acquireReference();
+        try (Statement stmt = connection.createStatement();
+             ResultSet c = stmt.executeQuery(sql)) {
+            final ColumnarBatch batch = ColumnarBatch.create(c.getMetaData(), batchSize);
+            while (batch.fill(c)) {
+                handler.onBatch(batch);
+            }
+        } catch (SQLException ex) {
+            logException(ex);
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Leases a handle on this database for a single thread or task, which must be closed
+     * once it's no longer needed (i.e. with try-with-resources).
+     *
+     * @return the lease, or null if it couldn't be created
+     * @throws IllegalStateException if this database was already closed
+     */
+    public SQLiteLease lease() {
+        acquireReference();
+        try {
+            return new SQLiteLease(this);
         } catch (SQLException ex) {
             logException(ex);
             return null;
@@ -170,6 +451,243 @@ public final class SQLiteDatabase extends SQLiteCloseable {
         }
     }
 
+    /**
+     * Creates a publisher that streams the rows of a raw SQL query to its subscribers,
+     * mapping each row only when a subscriber has requested it.
+     *
+     * Each subscriber gets its own statement, so the cursor is never closed by other queries,
+     * and is only advanced as far as the subscriber's demand. This keeps memory bounded when
+     * streaming whole tables, instead of buffering every row before handing them over.
+     *
+     * Rows are emitted on the thread calling {@link Flow.Subscription#request(long)}, and
+     * the database stays open until every subscription has completed or been cancelled.
+     *
+     * @param sql the SQL query to run for each subscriber
+     * @param mapper the mapper to map each row
+     * @return the publisher of mapped rows
+     */
+    public <T> Flow.Publisher<T> queryPublisher(String sql, RowMapper<T> mapper) {
+        return new QueryPublisher<>(this, sql, mapper);
+    }
+
+    /**
+     * Exports every row of a table, streaming them through a cursor to the writer so that
+     * memory use doesn't depend on the size of the table. The writer isn't closed.
+     *
+     * @param table the name of the table
+     * @param out the writer to write the rows to
+     * @param format the format to write the rows in
+     * @return the number of rows exported, or -1 if the export failed
+     */
+    public long exportTable(String table, Writer out, TableFormat format) {
+        acquireReference();
+        try (Statement stmt = connection.createStatement();
+             ResultSet c = stmt.executeQuery(SQLBuilder.createQuery(table, null, null, null))) {
+            final ResultSetMetaData meta = c.getMetaData();
+            final String[] columns = new String[meta.getColumnCount()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = meta.getColumnName(i + 1);
+            }
+            format.writeHeader(out, columns);
+
+            final Object[] values = new Object[columns.length];
+            long count = 0;
+            while (c.next()) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = c.getObject(i + 1);
+                }
+                format.writeRow(out, columns, values);
+                count++;
+            }
+            out.flush();
+            return count;
+        } catch (SQLException|IOException ex) {
+            logException(ex);
+            return -1;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Imports rows into a table, reading them from the reader and inserting them in
+     * batches with compiled inserts, so that memory use doesn't depend on the size of the
+     * input. All rows are committed together; if any row fails, none of them are imported.
+     * The reader isn't closed.
+     *
+     * Only the first batch is retried while the database is locked, since retrying a later
+     * one would roll back the rows already inserted.
+     *
+     * @param table the name of the table
+     * @param in the reader to read the rows from
+     * @param format the format to read the rows in
+     * @return the number of rows imported, or -1 if the import failed
+     */
+    public long importTable(String table, Reader in, TableFormat format) {
+        acquireReference();
+        try {
+            final TableFormat.RowReader reader = format.reader(in);
+            final List<ContentValues> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            long count = 0;
+            PreparedStatement stmt = null;
+            try {
+                List<String> cols = null;
+                ContentValues row;
+                while ((row = reader.read()) != null) {
+                    final List<String> rowCols = new ArrayList<>(row.getKeys());
+                    if (!rowCols.equals(cols)) {
+                        count += importBatch(stmt, batch, count == 0);
+                        if (stmt != null) {
+                            stmt.close();
+                        }
+                        cols = rowCols;
+                        stmt = connection.prepareStatement(SQLBuilder.createInsertStatement(table, cols));
+                        this.stats.compiled.increment();
+                    }
+                    batch.add(row);
+                    if (batch.size() == IMPORT_BATCH_SIZE) {
+                        count += importBatch(stmt, batch, count == 0);
+                    }
+                }
+                count += importBatch(stmt, batch, count == 0);
+            } finally {
+                if (stmt != null) {
+                    stmt.close();
+                }
+            }
+            execute(() -> {
+                commit();
+                return null;
+            }, false);
+            noteWrites(table, count);
+            return count;
+        } catch (SQLException|IOException ex) {
+            logException(ex);
+            rollback();
+            return -1;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Computes content hashes of every row of a table, identifying rows by their key. Keys
+     * don't have to be unique; rows sharing a key are matched by their content.
+     *
+     * The table is read on separate read-only connections, so uncommitted changes aren't
+     * included, and large tables are split into rowid ranges which are hashed in parallel.
+     * An in-memory database can't be opened again, so it's read on its own connection.
+     *
+     * @param table the name of the table
+     * @param keyColumns the columns identifying a row, or none to use the primary key
+     * @return the checksum of the table, or null if it couldn't be computed
+     */
+    public TableChecksum checksum(String table, String... keyColumns) {
+        acquireReference();
+        try {
+            final String[] keys = (keyColumns.length > 0) ? keyColumns : getPrimaryKey(table);
+            if (path == null) {
+                final List<TableChecksum.Row> rows = new ArrayList<>();
+                try (Statement stmt = connection.createStatement();
+                     ResultSet c = stmt.executeQuery(SQLBuilder.createChecksumQuery(table, keys, false))) {
+                    hashRows(c, keys.length, rows);
+                }
+                return new TableChecksum(table, TableChecksum.DEFAULT_BUCKETS, Collections.singletonList(rows));
+            }
+            final List<long[]> ranges = getRowIdRanges(table);
+            if (ranges == null) {
+                final List<TableChecksum.Row> rows = hashRange(
+                        SQLBuilder.createChecksumQuery(table, keys, false), keys.length, null);
+                return new TableChecksum(table, TableChecksum.DEFAULT_BUCKETS, Collections.singletonList(rows));
+            }
+
+            final String sql = SQLBuilder.createChecksumQuery(table, keys, true);
+            final ExecutorService executor = Executors.newFixedThreadPool(ranges.size());
+            try {
+                final List<Future<List<TableChecksum.Row>>> futures = new ArrayList<>();
+                for (long[] range : ranges) {
+                    futures.add(executor.submit(() -> hashRange(sql, keys.length, range)));
+                }
+                final List<List<TableChecksum.Row>> parts = new ArrayList<>();
+                for (Future<List<TableChecksum.Row>> future : futures) {
+                    parts.add(future.get());
+                }
+                return new TableChecksum(table, TableChecksum.DEFAULT_BUCKETS, parts);
+            } finally {
+                executor.shutdownNow();
+            }
+        } catch (SQLException|InterruptedException ex) {
+            logException(ex);
+            return null;
+        } catch (ExecutionException ex) {
+            logException((ex.getCause() instanceof Exception) ? (Exception)ex.getCause() : ex);
+            return null;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Compares a table in this database with the same table in another database, only
+     * comparing rows where the hashes of their key ranges differ.
+     *
+     * @param other the other database
+     * @param table the name of the table
+     * @param keyColumns the columns identifying a row, or none to use the primary key
+     * @return the rows inserted, updated or deleted in the other database, or null if the
+     *         tables couldn't be compared
+     */
+    public TableDiff diff(SQLiteDatabase other, String table, String... keyColumns) {
+        final TableChecksum mine = checksum(table, keyColumns);
+        final TableChecksum theirs = other.checksum(table, keyColumns);
+        return (mine != null && theirs != null) ? mine.diff(theirs) : null;
+    }
+
+    /**
+     * Compiles a SQL statement so that it can be executed repeatedly, binding new
+     * arguments each time, without parsing the SQL again.
+     *
+     * The returned statement must be closed once it's no longer needed.
+     *
+     * @param sql the SQL statement, using ? for arguments
+     * @return the compiled statement, or null if it couldn't be compiled
+     */
+    public SQLiteStatement compileStatement(String sql) {
+        acquireReference();
+        try {
+            final SQLiteStatement stmt = new SQLiteStatement(this, connection.prepareStatement(sql));
+            this.stats.compiled.increment();
+            return stmt;
+        } catch (SQLException ex) {
+            logException(ex);
+            return null;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Registers a Java-implemented SQL function on the connection, so that it can be used
+     * in any SQL statement run on this database.
+     *
+     * Scalar functions extend {@link Function} and implement {@link Function#xFunc()}.
+     * Aggregate functions extend {@link Function.Aggregate} and implement xStep() and xFinal().
+     * Registering a function under a name that is already registered replaces it.
+     *
+     * @param name the name of the function in SQL
+     * @param function the implementation of the function
+     */
+    public void createFunction(String name, Function function) {
+        acquireReference();
+        try {
+            Function.create(connection, name, function);
+        } catch (SQLException ex) {
+            logException(ex);
+        } finally {
+            releaseReference();
+        }
+    }
+
     /**
      * Executes a command on the SQLite database using a raw SQL query.
      * @param sql the SQL query to run
@@ -177,15 +695,257 @@ public final class SQLiteDatabase extends SQLiteCloseable {
     public void execSql(String sql) {
         acquireReference();
         try {
-            this.statement.executeUpdate(sql);
-            this.connection.commit();
+            execute(() -> {
+                this.statement.executeUpdate(sql);
+                commit();
+                return null;
+            });
         } catch (SQLException ex) {
             logException(ex);
+            rollback();
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Begins a transaction. Until the matching {@link #endTransaction()}, writes are not
+     * committed one by one, but all together when the outermost transaction ends, which is
+     * much faster for many small writes. Transactions may be nested.
+     *
+     * Use it like this:
+     * <pre>
+     *   db.beginTransaction();
+     *   try {
+     *       ...
+     *       db.setTransactionSuccessful();
+     *   } finally {
+     *       db.endTransaction();
+     *   }
+     * </pre>
+     *
+     * Statements are not retried inside a transaction, and statements that SQLite refuses to
+     * run inside one (i.e. {@link #attach(Path, String)}) fail. The transaction belongs to the
+     * connection, so other threads' writes in the meantime are part of it.
+     */
+    public void beginTransaction() {
+        acquireReference();
+        try {
+            this.transactionDepth++;
+            this.transactionSuccessful = false;
         } finally {
             releaseReference();
         }
     }
 
+    /**
+     * Marks the current transaction as successful, so its writes are kept when it ends.
+     */
+    public void setTransactionSuccessful() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("No transaction in progress!");
+        }
+        this.transactionSuccessful = true;
+    }
+
+    /**
+     * Ends the current transaction. Once the outermost transaction ends, its writes are
+     * committed if every nested transaction was marked successful and no write failed, or
+     * rolled back otherwise.
+     */
+    public void endTransaction() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("No transaction in progress!");
+        }
+        if (!transactionSuccessful) {
+            this.transactionFailed = true;
+        }
+        this.transactionSuccessful = false;
+        if (--this.transactionDepth > 0) {
+            return;
+        }
+
+        final boolean failed = transactionFailed;
+        this.transactionFailed = false;
+        acquireReference();
+        try {
+            if (failed) {
+                this.connection.rollback();
+            } else {
+                this.connection.commit();
+            }
+        } catch (SQLException ex) {
+            logException(ex);
+            rollback();
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * @return true if a transaction is in progress
+     */
+    public boolean inTransaction() {
+        return transactionDepth > 0;
+    }
+
+    /**
+     * Attaches another database file to the connection under an alias, so that its tables
+     * can be used in any SQL statement run on this database (i.e. "[alias].[table]").
+     *
+     * Joining attached databases in SQL lets SQLite's planner use their indexes and share
+     * its page cache, instead of loading both into Java maps to match them up. Uncommitted
+     * changes are committed first, since SQLite can't attach within a transaction.
+     *
+     * @param file the database file to attach
+     * @param alias the alias to use as its schema name
+     */
+    public void attach(Path file, String alias) {
+        acquireReference();
+        try (PreparedStatement stmt = connection.prepareStatement(SQLBuilder.createAttach(alias))) {
+            stmt.setString(1, file.toString());
+            executeOutsideTransaction(stmt::execute);
+        } catch (SQLException ex) {
+            logException(ex);
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Detaches a database file that was attached with {@link #attach(Path, String)}.
+     * @param alias the alias of the attached database
+     */
+    public void detach(String alias) {
+        acquireReference();
+        try {
+            executeOutsideTransaction(() -> statement.execute(SQLBuilder.createDetach(alias)));
+        } catch (SQLException ex) {
+            logException(ex);
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Runs maintenance on the database after large writes, which would otherwise leave
+     * stale query planner statistics and unused pages behind.
+     *
+     * The statistics of each table written to since the last maintenance are refreshed
+     * with ANALYZE, followed by PRAGMA optimize (on SQLite 3.18 or newer). Free pages are
+     * released with PRAGMA incremental_vacuum, which only shrinks the file if auto_vacuum
+     * is INCREMENTAL, and the write-ahead log is checkpointed and truncated if it's used.
+     * Uncommitted changes are committed first.
+     *
+     * @return the report of the maintenance, or null if it failed
+     */
+    public MaintenanceReport runMaintenance() {
+        acquireReference();
+        final long start = System.nanoTime();
+        final List<String> tables = new ArrayList<>(writes.keySet());
+        try {
+            final long sizeBefore = getSize();
+            executeOutsideTransaction(() -> {
+                for (String table : tables) {
+                    runPragma(SQLBuilder.createAnalyze(table));
+                }
+                runPragma("PRAGMA optimize;");
+                vacuumFreePages();
+                runPragma("PRAGMA wal_checkpoint(TRUNCATE);");
+                return null;
+            });
+            this.writes.keySet().removeAll(tables);
+            final long sizeAfter = getSize();
+            final long freePages = queryForLong("PRAGMA freelist_count;");
+            return new MaintenanceReport(tables, sizeBefore, sizeAfter, freePages,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (SQLException ex) {
+            logException(ex);
+            return null;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Gets the number of rows written since the last maintenance, counting rows inserted,
+     * updated or deleted through the convenience methods.
+     * @return the number of rows written
+     */
+    public long getPendingWrites() {
+        long total = 0;
+        for (long count : writes.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Counts rows written to a table, to be analyzed by the next maintenance. The convenience
+     * methods count their own writes; this is for writes they can't see, like those made
+     * with a {@link SQLiteStatement}.
+     *
+     * @param table the name of the table
+     * @param count the number of rows written
+     */
+    public void noteWrites(String table, long count) {
+        if (count > 0) {
+            this.writes.merge(table, count, Long::sum);
+        }
+    }
+
+    /**
+     * Sets how long SQLite waits for another connection to release its lock, before a
+     * statement fails because the database is locked.
+     *
+     * @param millis the time to wait in milliseconds, or 0 to fail immediately
+     */
+    public void setBusyTimeout(int millis) {
+        acquireReference();
+        try {
+            this.statement.execute("PRAGMA busy_timeout=" + Math.max(0, millis));
+        } catch (SQLException ex) {
+            logException(ex);
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Sets the policy used to retry statements that fail because the database is locked.
+     *
+     * Before each retry, the uncommitted changes are rolled back so that this connection
+     * releases its own locks, letting the competing connection finish first. Statements
+     * inside a transaction are never retried, since that would undo the whole transaction.
+     *
+     * @param retryPolicy the retry policy, or null to never retry
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Sets how long a statement may run before it's interrupted. The timeout applies to
+     * executing a statement, not to iterating over the results of a query.
+     *
+     * @param millis the timeout in milliseconds, or 0 for no timeout
+     */
+    public void setStatementTimeout(long millis) {
+        this.statementTimeoutMillis = Math.max(0, millis);
+    }
+
+    /**
+     * Interrupts the statements running on the connection, causing them to fail as soon as
+     * possible. This is safe to call from any thread.
+     */
+    public void interrupt() {
+        try {
+            this.statement.cancel();
+        } catch (SQLException ex) {
+            logException(ex);
+        }
+    }
+
     /**
      * Sets the user version of the SQLite database.
      * @param version the user version to be set
@@ -195,7 +955,7 @@ public final class SQLiteDatabase extends SQLiteCloseable {
         try {
             final String SQL = "PRAGMA user_version=" + version;
             this.statement.executeUpdate(SQL);
-            this.connection.commit();
+            commit();
         } catch (SQLException ex) {
             logException(ex);
         } finally {
@@ -221,6 +981,452 @@ public final class SQLiteDatabase extends SQLiteCloseable {
         }
     }
 
+    /**
+     * Inserts each row using a compiled insert statement, without committing them.
+     *
+     * @param table the name of the table
+     * @param rows the content to be inserted, one per row
+     * @return the rowids of the inserted rows, or -1 for each row that wasn't inserted
+     */
+    private long[] insertAll(String table, List<ContentValues> rows) throws SQLException {
+        final long[] rowIds = new long[rows.size()];
+        PreparedStatement stmt = null;
+        try {
+            List<String> cols = null;
+            for (int i = 0; i < rows.size(); i++) {
+                final ContentValues values = rows.get(i);
+                final List<String> rowCols = new ArrayList<>(values.getKeys());
+                if (!rowCols.equals(cols)) {
+                    if (stmt != null) {
+                        stmt.close();
+                    }
+                    cols = rowCols;
+                    stmt = connection.prepareStatement(SQLBuilder.createInsertStatement(table, cols));
+                    this.stats.compiled.increment();
+                }
+
+                int index = 1;
+                for (Object value : values.getData()) {
+                    bind(stmt, index++, value);
+                }
+                rowIds[i] = (stmt.executeUpdate() == 0) ? -1 : lastInsertRowId();
+                this.stats.compiledExecutions.increment();
+            }
+            return rowIds;
+        } finally {
+            if (stmt != null) {
+                try {
+                    stmt.close();
+                } catch (SQLException ex) {
+                    logException(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes a batch of rows to import with a compiled insert, without committing them.
+     * The rows are bound again on every attempt, since a failed batch is cleared.
+     *
+     * @param stmt the compiled insert for the columns of the rows
+     * @param rows the rows to insert, which are cleared once inserted
+     * @param retryable true if the batch may be retried while the database is locked
+     * @return the number of rows inserted
+     */
+    private int importBatch(PreparedStatement stmt, List<ContentValues> rows, boolean retryable) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        execute(() -> {
+            stmt.clearBatch();
+            for (ContentValues values : rows) {
+                int index = 1;
+                for (Object value : values.getData()) {
+                    bind(stmt, index++, value);
+                }
+                stmt.addBatch();
+            }
+            return stmt.executeBatch();
+        }, retryable);
+        this.stats.compiledExecutions.add(rows.size());
+        final int count = rows.size();
+        rows.clear();
+        return count;
+    }
+
+    /**
+     * Runs an operation on the connection, applying the statement timeout and retrying
+     * the operation according to the retry policy while the database is locked.
+     *
+     * @param operation the operation to run
+     * @return the result of the operation
+     * @throws SQLException if the operation failed, or was still locked after all attempts
+     */
+    <T> T execute(Operation<T> operation) throws SQLException {
+        return execute(operation, true);
+    }
+
+    /**
+     * Runs an operation on the connection, applying the statement timeout, and retrying
+     * the operation while the database is locked if it's retryable.
+     *
+     * @param operation the operation to run
+     * @param retryable false if a retry, which rolls back first, would lose earlier writes
+     * @return the result of the operation
+     * @throws SQLException if the operation failed, or was still locked after all attempts
+     */
+    private <T> T execute(Operation<T> operation, boolean retryable) throws SQLException {
+        final RetryPolicy policy = retryable ? retryPolicy : null;
+        this.stats.executed.increment();
+        for (int attempt = 1; ; attempt++) {
+            final ScheduledFuture<?> timeout = scheduleTimeout();
+            final long start = System.nanoTime();
+            try {
+                return operation.run();
+            } catch (SQLException ex) {
+                if (policy == null || transactionDepth > 0 || attempt >= policy.getMaxAttempts()
+                        || !RetryPolicy.isRetryable(ex)) {
+                    throw ex;
+                }
+                rollback();
+                this.stats.retries.increment();
+                try {
+                    Thread.sleep(policy.getDelay(attempt - 1, ThreadLocalRandom.current()));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                } finally {
+                    this.stats.lockWaitNanos.add(System.nanoTime() - start);
+                }
+            } finally {
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the primary key columns of a table, or the rowid if it has none.
+     *
+     * @param table the name of the table
+     * @return the key columns
+     */
+    private String[] getPrimaryKey(String table) throws SQLException {
+        final List<String> pk = new ArrayList<>();
+        final List<Integer> order = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet c = stmt.executeQuery("PRAGMA table_info([" + table + "]);")) {
+            while (c.next()) {
+                final int position = c.getInt("pk");
+                if (position > 0) {
+                    int i = 0;
+                    while (i < order.size() && order.get(i) < position) {
+                        i++;
+                    }
+                    order.add(i, position);
+                    pk.add(i, c.getString("name"));
+                }
+            }
+        }
+        return pk.isEmpty() ? new String[] { "rowid" } : pk.toArray(new String[0]);
+    }
+
+    /**
+     * Splits the rowids of a table into ranges to be hashed in parallel.
+     *
+     * @param table the name of the table
+     * @return the ranges, or null if the table should be hashed as a whole
+     */
+    private List<long[]> getRowIdRanges(String table) throws SQLException {
+        final long min;
+        final long max;
+        try (Connection reader = openReader();
+             Statement stmt = reader.createStatement();
+             ResultSet c = stmt.executeQuery("SELECT min(rowid),max(rowid) FROM [" + table + "];")) {
+            c.next();
+            min = c.getLong(1);
+            max = c.getLong(2);
+            if (c.wasNull()) {
+                return null;
+            }
+        } catch (SQLException ex) {
+            // Tables without rowids can't be split into ranges
+            return null;
+        }
+
+        final long span = max - min + 1;
+        final int count = (int)Math.min(Runtime.getRuntime().availableProcessors(),
+                Math.max(1, span / CHECKSUM_MIN_RANGE));
+        if (count < 2 || span <= 0) {
+            return null;
+        }
+        final List<long[]> ranges = new ArrayList<>(count);
+        final long size = span / count;
+        for (int i = 0; i < count; i++) {
+            final long start = min + i * size;
+            ranges.add(new long[] { start, (i == count - 1) ? max : start + size - 1 });
+        }
+        return ranges;
+    }
+
+    /**
+     * Hashes the rows of a rowid range on a new read-only connection.
+     *
+     * @param sql the checksum query, taking the range as arguments if there is one
+     * @param keyCount the number of key columns
+     * @param range the first and last rowid of the range, or null for the whole table
+     * @return the hashed rows
+     */
+    private List<TableChecksum.Row> hashRange(String sql, int keyCount, long[] range) throws SQLException {
+        try (Connection reader = openReader();
+             PreparedStatement stmt = reader.prepareStatement(sql)) {
+            if (range != null) {
+                stmt.setLong(1, range[0]);
+                stmt.setLong(2, range[1]);
+            }
+            final List<TableChecksum.Row> rows = new ArrayList<>();
+            try (ResultSet c = stmt.executeQuery()) {
+                hashRows(c, keyCount, rows);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Opens a new read-only connection to the database file, which only sees committed data.
+     * @return the connection
+     */
+    private Connection openReader() throws SQLException {
+        final SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        return config.createConnection(PATH + path);
+    }
+
+    private static void hashRows(ResultSet c, int keyCount, List<TableChecksum.Row> rows) throws SQLException {
+        final int columnCount = c.getMetaData().getColumnCount();
+        while (c.next()) {
+            rows.add(TableChecksum.hashRow(c, keyCount, columnCount));
+        }
+    }
+
+    /**
+     * Releases the free pages of the database, if auto_vacuum is INCREMENTAL.
+     */
+    private void vacuumFreePages() throws SQLException {
+        if (queryForLong("PRAGMA auto_vacuum;") != 2) {
+            return;
+        }
+        // The driver only steps a statement once per execution, and each step frees a page
+        try (PreparedStatement stmt = connection.prepareStatement("PRAGMA incremental_vacuum;")) {
+            for (long free = queryForLong("PRAGMA freelist_count;"); free > 0; free--) {
+                stmt.execute();
+            }
+        }
+    }
+
+    /**
+     * Runs a statement on its own, so that any results it returns are closed right away.
+     * @param sql the statement
+     */
+    private void runPragma(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    /**
+     * Gets the size of the database file, from its page count and page size.
+     * @return the size in bytes
+     */
+    private long getSize() throws SQLException {
+        return queryForLong("PRAGMA page_count;") * queryForLong("PRAGMA page_size;");
+    }
+
+    /**
+     * Runs a query that returns a single number.
+     *
+     * @param sql the query
+     * @return the value of the first column of the first row, or -1 if there were no results
+     */
+    private long queryForLong(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet c = stmt.executeQuery(sql)) {
+            return c.next() ? c.getLong(1) : -1;
+        }
+    }
+
+    /**
+     * Runs an operation in auto-commit mode, for statements that SQLite refuses to run
+     * within a transaction. Uncommitted changes are committed first.
+     *
+     * @param operation the operation to run
+     */
+    private <T> T executeOutsideTransaction(Operation<T> operation) throws SQLException {
+        if (transactionDepth > 0) {
+            throw new SQLException("Cannot run this statement inside a transaction!");
+        }
+        this.connection.commit();
+        this.connection.setAutoCommit(true);
+        try {
+            return execute(operation);
+        } finally {
+            this.connection.setAutoCommit(false);
+        }
+    }
+
+    /**
+     * Schedules the connection to be interrupted once the statement timeout elapses.
+     * @return the scheduled interrupt, or null if there's no statement timeout
+     */
+    private ScheduledFuture<?> scheduleTimeout() {
+        final long millis = statementTimeoutMillis;
+        if (millis <= 0) {
+            return null;
+        }
+        return Timeouts.SCHEDULER.schedule(this::interrupt, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a JSON update command, binding the given strings as its arguments.
+     *
+     * @param table the name of the table being updated
+     * @param sql the update command
+     * @param args the arguments to bind in order
+     * @return the number of rows changed, or -1 if the command failed
+     */
+    private int updateJson(String table, String sql, String... args) {
+        acquireReference();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                stmt.setString(i + 1, args[i]);
+            }
+            final int count = execute(() -> {
+                final int changed = stmt.executeUpdate();
+                commit();
+                return changed;
+            });
+            noteWrites(table, count);
+            return count;
+        } catch (SQLException ex) {
+            logException(ex);
+            rollback();
+            return -1;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Runs a PRAGMA that returns a single number, for monitoring.
+     *
+     * @param pragma the name of the PRAGMA (i.e. "page_count")
+     * @return the value, or -1 if it couldn't be read (i.e. the database was closed)
+     */
+    long pragmaForLong(String pragma) {
+        try {
+            acquireReference();
+        } catch (IllegalStateException ex) {
+            return -1;
+        }
+        try {
+            return queryForLong("PRAGMA " + pragma + ";");
+        } catch (SQLException ex) {
+            return -1;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Gets the size of the write-ahead log file of the database.
+     * @return the size in bytes, or 0 if it doesn't exist
+     */
+    long getWalSize() {
+        return (path == null) ? 0 : new File(path + "-wal").length();
+    }
+
+    /**
+     * Gets the number of rows written per table since the last maintenance.
+     * @return the write counts by table
+     */
+    Map<String, Long> getTableWrites() {
+        return writes;
+    }
+
+    /**
+     * Creates a new statement on the connection, which the caller must close.
+     * @return the statement
+     */
+    Statement createStatement() throws SQLException {
+        return connection.createStatement();
+    }
+
+    /**
+     * Commits the changes made on the connection, unless a transaction is in progress.
+     */
+    void commit() throws SQLException {
+        if (transactionDepth == 0) {
+            this.connection.commit();
+        }
+    }
+
+    /**
+     * Gets the rowid of the last row inserted on the connection.
+     * @return the rowid
+     */
+    long lastInsertRowId() throws SQLException {
+        if (lastInsertRowId == null) {
+            this.lastInsertRowId = connection.prepareStatement("SELECT last_insert_rowid();");
+        }
+        try (ResultSet c = lastInsertRowId.executeQuery()) {
+            return c.next() ? c.getLong(1) : -1;
+        }
+    }
+
+    /**
+     * Rolls back the uncommitted changes made on the connection. Inside a transaction, the
+     * transaction is rolled back when it ends instead.
+     */
+    void rollback() {
+        if (transactionDepth > 0) {
+            this.transactionFailed = true;
+            return;
+        }
+        try {
+            if (!connection.getAutoCommit()) {
+                this.connection.rollback();
+            }
+        } catch (SQLException ex) {
+            logException(ex);
+        }
+    }
+
+    /**
+     * Binds a value from {@link ContentValues} as an argument of a compiled statement.
+     *
+     * @param stmt the compiled statement
+     * @param index the 1-based index of the argument
+     * @param value the value to bind
+     */
+    static void bind(PreparedStatement stmt, int index, Object value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(index, Types.NULL);
+        } else if (value instanceof String) {
+            stmt.setString(index, (String)value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Long) {
+            stmt.setLong(index, ((Number)value).longValue());
+        } else if (value instanceof Float || value instanceof Double) {
+            stmt.setDouble(index, ((Number)value).doubleValue());
+        } else if (value instanceof Boolean) {
+            stmt.setLong(index, ((Boolean)value) ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            stmt.setBytes(index, (byte[])value);
+        } else {
+            stmt.setString(index, value.toString());
+        }
+    }
+
     /**
      * Opens a connection to the SQLite database.
      * @param dbName the name of the database file (don't include file extension)
@@ -229,19 +1435,37 @@ public final class SQLiteDatabase extends SQLiteCloseable {
         try {
             Class.forName(DRIVER);
             this.connection = DriverManager.getConnection(PATH + dbName);
+            this.path = (dbName.isEmpty() || dbName.startsWith(":memory:")) ? null : dbName;
             this.connection.setAutoCommit(false);
             this.statement = connection.createStatement();
-            acquireReference();
         } catch (ClassNotFoundException|SQLException ex) {
             logException(ex);
         }
     }
 
+    /**
+     * An operation that runs statements on the connection.
+     */
+    interface Operation<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Holds the scheduler for statement timeouts, which is only created once needed.
+     */
+    private static final class Timeouts {
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "SQLite-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     /**
      * Convenience method to log an exception and print its stacktrace.
      * @param ex the exception
      */
-    private void logException(final Exception ex) {
+    void logException(final Exception ex) {
         System.err.println("SQLite > " + ex.getMessage());
         ex.printStackTrace();
     }
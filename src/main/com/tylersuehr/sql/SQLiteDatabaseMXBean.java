@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.util.Map;
+
+/**
+ * Management interface exposing the statistics of a {@link SQLiteDatabase} over JMX.
+ *
+ * These help tell whether a slowdown comes from lock contention (retries and lock waits),
+ * statement churn (statements compiled versus executed), or the page cache (cache size
+ * versus database size), and which tables are being written to.
+ *
+ * @see SQLiteOpenHelper#registerMBean()
+ *
+ * @author Tyler Suehr
+ */
+public interface SQLiteDatabaseMXBean {
+    /**
+     * @return the number of references pinning the connection (i.e. leases, statements)
+     */
+    int getReferences();
+
+    /**
+     * @return the number of leases that haven't been closed yet
+     */
+    int getOpenLeases();
+
+    /**
+     * @return the number of statements executed, not counting retries
+     */
+    long getStatementsExecuted();
+
+    /**
+     * @return the number of times a statement was retried because the database was locked
+     */
+    long getLockRetries();
+
+    /**
+     * @return the total time spent waiting on locks before retrying, in milliseconds
+     */
+    long getLockWaitMillis();
+
+    /**
+     * @return the number of statements compiled for repeated execution
+     */
+    long getStatementsCompiled();
+
+    /**
+     * @return the number of executions of compiled statements
+     */
+    long getCompiledExecutions();
+
+    /**
+     * @return the fraction of compiled statement executions that reused an already
+     *         compiled statement, between 0 and 1
+     */
+    double getCompiledReuseRate();
+
+    /**
+     * @return the size of a page in bytes, or -1 if unavailable
+     */
+    long getPageSize();
+
+    /**
+     * @return the number of pages in the database, or -1 if unavailable
+     */
+    long getPageCount();
+
+    /**
+     * @return the maximum number of pages in the page cache, or negative for a size in KiB
+     */
+    long getCacheSize();
+
+    /**
+     * @return the number of unused pages in the database, or -1 if unavailable
+     */
+    long getFreePages();
+
+    /**
+     * @return the size of the write-ahead log file in bytes, or 0 if it isn't used
+     */
+    long getWalSize();
+
+    /**
+     * @return the number of rows written per table since the last maintenance
+     */
+    Map<String, Long> getTableWrites();
+}
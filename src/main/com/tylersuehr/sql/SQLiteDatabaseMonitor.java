@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the statistics of a {@link SQLiteDatabase} as an MXBean.
+ *
+ * @author Tyler Suehr
+ */
+final class SQLiteDatabaseMonitor implements SQLiteDatabaseMXBean {
+    private final SQLiteDatabase database;
+
+
+    SQLiteDatabaseMonitor(SQLiteDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    public int getReferences() {
+        return database.getReferenceCount();
+    }
+
+    @Override
+    public int getOpenLeases() {
+        return database.stats.leases.get();
+    }
+
+    @Override
+    public long getStatementsExecuted() {
+        return database.stats.executed.sum();
+    }
+
+    @Override
+    public long getLockRetries() {
+        return database.stats.retries.sum();
+    }
+
+    @Override
+    public long getLockWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(database.stats.lockWaitNanos.sum());
+    }
+
+    @Override
+    public long getStatementsCompiled() {
+        return database.stats.compiled.sum();
+    }
+
+    @Override
+    public long getCompiledExecutions() {
+        return database.stats.compiledExecutions.sum();
+    }
+
+    @Override
+    public double getCompiledReuseRate() {
+        final long executions = getCompiledExecutions();
+        return (executions == 0) ? 0 : Math.max(0, 1 - (double)getStatementsCompiled() / executions);
+    }
+
+    @Override
+    public long getPageSize() {
+        return database.pragmaForLong("page_size");
+    }
+
+    @Override
+    public long getPageCount() {
+        return database.pragmaForLong("page_count");
+    }
+
+    @Override
+    public long getCacheSize() {
+        return database.pragmaForLong("cache_size");
+    }
+
+    @Override
+    public long getFreePages() {
+        return database.pragmaForLong("freelist_count");
+    }
+
+    @Override
+    public long getWalSize() {
+        return database.getWalSize();
+    }
+
+    @Override
+    public Map<String, Long> getTableWrites() {
+        return new TreeMap<>(database.getTableWrites());
+    }
+}
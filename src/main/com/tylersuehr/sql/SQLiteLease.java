@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A handle on a {@link SQLiteDatabase} for a single thread or task, created with
+ * {@link SQLiteDatabase#lease()} and meant to be used with try-with-resources.
+ *
+ * A lease pins the database until it's closed, so closing the database only closes the
+ * connection once every lease was closed too; no new leases can be taken out in the meantime.
+ * Each lease has its own statement, so results of its queries aren't closed by queries made
+ * through the database or other leases. A lease is not safe to share between threads.
+ *
+ * @author Tyler Suehr
+ */
+public final class SQLiteLease extends SQLiteCloseable {
+    private final SQLiteDatabase database;
+    private final Statement statement;
+
+
+    SQLiteLease(SQLiteDatabase database) throws SQLException {
+        database.acquireReference();
+        try {
+            this.statement = database.createStatement();
+        } catch (SQLException ex) {
+            database.releaseReference();
+            throw ex;
+        }
+        this.database = database;
+        this.database.stats.leases.incrementAndGet();
+    }
+
+    @Override
+    protected void onAllReferencesReleased() {
+        try {
+            this.statement.close();
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+        } finally {
+            this.database.stats.leases.decrementAndGet();
+            this.database.releaseReference();
+        }
+    }
+
+    /**
+     * Gets the database this lease pins.
+     * @return the database
+     */
+    public SQLiteDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * Queries data from the SQLite database.
+     *
+     * @param table the name of the table to query
+     * @param selection the WHERE clause (i.e. "[id]=12")
+     * @param order the ORDER BY clause (i.e. "[timestamp ASC]")
+     * @param limit the LIMIT clause (i.e. "4")
+     * @return the results, which stay open until the next query of this lease
+     */
+    public ResultSet query(String table, String selection, String order, String limit) {
+        return rawQuery(SQLBuilder.createQuery(table, selection, order, limit));
+    }
+
+    /**
+     * Queries data from the SQLite database using a raw SQL query.
+     *
+     * @param sql the SQL query to run
+     * @return the results, which stay open until the next query of this lease
+     */
+    public ResultSet rawQuery(String sql) {
+        acquireReference();
+        try {
+            return database.execute(() -> statement.executeQuery(sql));
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+            return null;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Executes a command on the SQLite database using a raw SQL query.
+     * @param sql the SQL query to run
+     */
+    public void execSql(String sql) {
+        acquireReference();
+        try {
+            this.database.execute(() -> {
+                this.statement.executeUpdate(sql);
+                this.database.commit();
+                return null;
+            });
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+            this.database.rollback();
+        } finally {
+            releaseReference();
+        }
+    }
+}
@@ -24,7 +24,10 @@
 
 package com.tylersuehr.sql;
 import java.io.Closeable;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.File;
+import java.lang.management.ManagementFactory;
 
 /**
  * Manages the SQLite database file, allowing it to be versioned.
@@ -57,6 +60,23 @@ import java.io.File;
  * user_version. This can be used to drop all the tables and re-create them if you've updated
  * the table structure.
  *
+ * <b>Indexing JSON</b>
+ * Columns holding JSON can be indexed from {@link #onCreate(SQLiteDatabase)} or
+ * {@link #onUpdate(SQLiteDatabase, int, int)} with {@link #createIndex(SQLiteDatabase, String, String, String...)}
+ * on {@link #jsonExtract(String, String)} expressions, or by exposing a JSON value as a virtual
+ * column with {@link #addGeneratedColumn(SQLiteDatabase, String, String, String, String)}. Lookups
+ * on that value can then use the index instead of scanning and decoding every row.
+ *
+ * <b>Maintenance</b>
+ * After large writes, the query planner statistics go stale and the file keeps unused pages.
+ * With {@link #setMaintenanceThreshold(long)}, {@link SQLiteDatabase#runMaintenance()} is run
+ * when closing, if at least that many rows were written, and its report is passed to
+ * {@link #onMaintenance(MaintenanceReport)}.
+ *
+ * <b>Monitoring</b>
+ * {@link #registerMBean()} exposes the statistics of the database over JMX as a
+ * {@link SQLiteDatabaseMXBean}, until the helper is closed.
+ *
  * @author Tyler Suehr
  */
 public abstract class SQLiteOpenHelper implements Closeable {
@@ -66,6 +86,10 @@ public abstract class SQLiteOpenHelper implements Closeable {
     private int version;
     /* Stores name of the SQLite database */
     private String name;
+    /* Stores number of rows written before maintenance is run on close, or 0 for never */
+    private long maintenanceThreshold;
+    /* Stores name the database is registered under over JMX, if it is */
+    private ObjectName mbeanName;
 
 
     public SQLiteOpenHelper(final String dbName, final int version) {
@@ -76,6 +100,13 @@ public abstract class SQLiteOpenHelper implements Closeable {
     @Override
     public final void close() {
         if (database != null) {
+            if (maintenanceThreshold > 0 && database.getPendingWrites() >= maintenanceThreshold) {
+                final MaintenanceReport report = database.runMaintenance();
+                if (report != null) {
+                    onMaintenance(report);
+                }
+            }
+            unregisterMBean();
             this.database.close();
         }
     }
@@ -95,6 +126,103 @@ public abstract class SQLiteOpenHelper implements Closeable {
      */
     protected abstract void onUpdate(SQLiteDatabase db, int oldV, int newV);
 
+    /**
+     * Called after maintenance was run on close.
+     * @param report the report of the maintenance
+     */
+    protected void onMaintenance(MaintenanceReport report) {
+        System.out.println("SQLite database maintained! " + report);
+    }
+
+    /**
+     * Sets the number of rows that must be written before maintenance is run on close.
+     * @param threshold the number of rows, or 0 to never run maintenance on close
+     */
+    public final void setMaintenanceThreshold(long threshold) {
+        this.maintenanceThreshold = Math.max(0, threshold);
+    }
+
+    /**
+     * Registers the statistics of the database as an MBean with the platform MBean server,
+     * under "com.tylersuehr.sql:type=SQLiteDatabase,name=[database name]". The MBean is
+     * unregistered when this helper is closed.
+     *
+     * @return true if registered, otherwise false (i.e. the name was already registered)
+     */
+    public final boolean registerMBean() {
+        if (mbeanName != null) {
+            return true;
+        }
+        try {
+            final ObjectName objectName = new ObjectName("com.tylersuehr.sql:type=SQLiteDatabase,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new SQLiteDatabaseMonitor(getWritableInstance()), objectName);
+            this.mbeanName = objectName;
+            return true;
+        } catch (JMException ex) {
+            System.err.println("SQLite > " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Unregisters the MBean registered by {@link #registerMBean()}, if any.
+     */
+    private void unregisterMBean() {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (JMException ex) {
+            System.err.println("SQLite > " + ex.getMessage());
+        }
+        this.mbeanName = null;
+    }
+
+    /**
+     * Creates an index on columns and/or expressions of a table, if it doesn't exist yet.
+     * Expression indexes need SQLite 3.9 or newer.
+     *
+     * @param db the database to create the index in
+     * @param index the name of the index
+     * @param table the name of the table
+     * @param expressions the columns (i.e. "[hymn_type]") or expressions to index
+     */
+    protected final void createIndex(SQLiteDatabase db, String index, String table, String... expressions) {
+        db.execSql(SQLBuilder.createIndex(index, table, false, expressions));
+    }
+
+    /**
+     * Adds a virtual generated column to a table, computed from an expression on the other
+     * columns of each row whenever it's read. It takes up no space, but can be indexed.
+     * Generated columns need SQLite 3.31 or newer.
+     *
+     * @param db the database to add the column in
+     * @param table the name of the table
+     * @param column the name of the new column
+     * @param type the type of the new column (i.e. "TEXT"), or null
+     * @param expression the expression computing the column
+     */
+    protected final void addGeneratedColumn(SQLiteDatabase db, String table, String column, String type, String expression) {
+        db.execSql(SQLBuilder.createAddGeneratedColumn(table, column, type, expression));
+    }
+
+    /**
+     * Creates an expression extracting a value from the JSON stored in a column, for use in
+     * {@link #createIndex(SQLiteDatabase, String, String, String...)} or
+     * {@link #addGeneratedColumn(SQLiteDatabase, String, String, String, String)}.
+     *
+     * Only scalar values can be looked up by index; to find rows by an element of a JSON
+     * array, use {@link SQLiteDatabase#jsonEach(String, String, String, String)}.
+     *
+     * @param column the column holding the JSON
+     * @param path the JSON path of the value (i.e. "$.data[0].path")
+     * @return the expression
+     */
+    protected static String jsonExtract(String column, String path) {
+        return SQLBuilder.createJsonExtract(column, path);
+    }
+
     /**
      * Lazily loads the SQLite database, ensuring only one instance is available.
      * @return the SQLite database
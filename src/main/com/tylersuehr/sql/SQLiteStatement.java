@@ -0,0 +1,223 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * A pre-compiled SQL statement of a {@link SQLiteDatabase}.
+ *
+ * The SQL is parsed only once, when the statement is compiled with
+ * {@link SQLiteDatabase#compileStatement(String)}. Arguments are bound by their 1-based index,
+ * so the same statement can be executed over and over in a loop without building any SQL or
+ * {@link ContentValues}.
+ *
+ * The statement holds a reference to its database until it is closed, so the database won't
+ * be closed out from under it. A statement is not safe to share between threads.
+ *
+ * @author Tyler Suehr
+ */
+public final class SQLiteStatement extends SQLiteCloseable {
+    private final SQLiteDatabase database;
+    private final PreparedStatement statement;
+
+
+    SQLiteStatement(SQLiteDatabase database, PreparedStatement statement) {
+        this.database = database;
+        this.statement = statement;
+        this.database.acquireReference();
+    }
+
+    @Override
+    protected void onAllReferencesReleased() {
+        try {
+            this.statement.close();
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+        } finally {
+            this.database.releaseReference();
+        }
+    }
+
+    public void bindLong(int index, long value) {
+        try {
+            this.statement.setLong(index, value);
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+        }
+    }
+
+    public void bindDouble(int index, double value) {
+        try {
+            this.statement.setDouble(index, value);
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+        }
+    }
+
+    public void bindString(int index, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Bind value at index " + index + " is null, use bindNull()!");
+        }
+        try {
+            this.statement.setString(index, value);
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+        }
+    }
+
+    public void bindBlob(int index, byte[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Bind value at index " + index + " is null, use bindNull()!");
+        }
+        try {
+            this.statement.setBytes(index, value);
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+        }
+    }
+
+    public void bindNull(int index) {
+        try {
+            this.statement.setNull(index, Types.NULL);
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+        }
+    }
+
+    /**
+     * Clears all the bound arguments, setting them back to null.
+     */
+    public void clearBindings() {
+        try {
+            this.statement.clearParameters();
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+        }
+    }
+
+    /**
+     * Executes a statement that doesn't return any results (i.e. CREATE or DROP).
+     */
+    public void execute() {
+        acquireReference();
+        this.database.stats.compiledExecutions.increment();
+        try {
+            this.database.execute(() -> {
+                this.statement.execute();
+                this.database.commit();
+                return null;
+            });
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+            this.database.rollback();
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Executes an INSERT statement.
+     * @return the rowid of the inserted row, or -1 if nothing was inserted
+     */
+    public long executeInsert() {
+        acquireReference();
+        this.database.stats.compiledExecutions.increment();
+        try {
+            return database.execute(() -> {
+                if (statement.executeUpdate() == 0) {
+                    return -1L;
+                }
+                final long rowId = database.lastInsertRowId();
+                this.database.commit();
+                return rowId;
+            });
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+            this.database.rollback();
+            return -1;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Executes an UPDATE or DELETE statement.
+     * @return the number of rows changed, or -1 if the statement failed
+     */
+    public int executeUpdateDelete() {
+        acquireReference();
+        this.database.stats.compiledExecutions.increment();
+        try {
+            return database.execute(() -> {
+                final int count = statement.executeUpdate();
+                this.database.commit();
+                return count;
+            });
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+            this.database.rollback();
+            return -1;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Executes a query that returns a single number (i.e. SELECT COUNT(*) FROM [users]).
+     * @return the value of the first column of the first row, or -1 if there were no results
+     */
+    public long simpleQueryForLong() {
+        acquireReference();
+        this.database.stats.compiledExecutions.increment();
+        try (ResultSet c = statement.executeQuery()) {
+            return c.next() ? c.getLong(1) : -1;
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+            return -1;
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Executes a query that returns a single string (i.e. SELECT [name] FROM [users] WHERE [id]=?).
+     * @return the value of the first column of the first row, or null if there were no results
+     */
+    public String simpleQueryForString() {
+        acquireReference();
+        this.database.stats.compiledExecutions.increment();
+        try (ResultSet c = statement.executeQuery()) {
+            return c.next() ? c.getString(1) : null;
+        } catch (SQLException ex) {
+            this.database.logException(ex);
+            return null;
+        } finally {
+            releaseReference();
+        }
+    }
+}
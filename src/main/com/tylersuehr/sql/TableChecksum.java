@@ -0,0 +1,317 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds content hashes of every row of a table, summarized in a Merkle tree.
+ *
+ * Each row is identified by a hash of its key columns, and its content by a hash of all
+ * its columns. Rows are spread over a fixed number of buckets by key hash, each bucket
+ * hashes its rows in key order, then content order, and each node of the tree hashes its
+ * two children. Two checksums of the same table are equal if their roots are, and
+ * otherwise are compared top-down, only comparing rows in the buckets whose hashes differ.
+ * Keys don't have to be unique: rows sharing a key are matched by content.
+ *
+ * @see SQLiteDatabase#checksum(String, String...)
+ *
+ * @author Tyler Suehr
+ */
+public final class TableChecksum {
+    static final int DEFAULT_BUCKETS = 4096;
+    private static final Row[] EMPTY = new Row[0];
+    private final String table;
+    private final Row[] rows;
+    private final int[] bucketStarts;
+    private final long[] tree;
+
+
+    /**
+     * Constructs a checksum from the hashed rows of a table.
+     *
+     * @param table the name of the table
+     * @param buckets the number of buckets, a power of 2
+     * @param parts the hashed rows, in any order
+     */
+    TableChecksum(String table, int buckets, List<List<Row>> parts) {
+        if (buckets <= 0 || Integer.bitCount(buckets) != 1) {
+            throw new IllegalArgumentException("Buckets must be a power of 2!");
+        }
+        this.table = table;
+
+        final List<Row> all = new ArrayList<>();
+        for (List<Row> part : parts) {
+            all.addAll(part);
+        }
+        this.rows = all.toArray(EMPTY);
+        Arrays.sort(rows, (a, b) -> {
+            final int cmp = Long.compareUnsigned(a.keyHash, b.keyHash);
+            return (cmp != 0) ? cmp : Long.compareUnsigned(a.rowHash, b.rowHash);
+        });
+
+        // Buckets are the top bits of the key hash, so sorted rows are grouped by bucket
+        final int shift = 64 - Integer.numberOfTrailingZeros(buckets);
+        this.bucketStarts = new int[buckets + 1];
+        this.tree = new long[buckets * 2];
+        int i = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            this.bucketStarts[bucket] = i;
+            long h = 0;
+            while (i < rows.length && bucketOf(rows[i].keyHash, shift) == bucket) {
+                h = combine(combine(h, rows[i].keyHash), rows[i].rowHash);
+                i++;
+            }
+            this.tree[buckets + bucket] = h;
+        }
+        this.bucketStarts[buckets] = rows.length;
+        for (int node = buckets - 1; node > 0; node--) {
+            this.tree[node] = combine(tree[node * 2], tree[node * 2 + 1]);
+        }
+    }
+
+    /**
+     * Gets the name of the table.
+     * @return the table
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Gets the number of rows in the table.
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    /**
+     * Gets the number of buckets the rows are spread over.
+     * @return the number of buckets
+     */
+    public int getBucketCount() {
+        return bucketStarts.length - 1;
+    }
+
+    /**
+     * Gets the hash of the whole table, which is equal for tables with the same rows.
+     * @return the root hash
+     */
+    public long getRoot() {
+        return tree[1];
+    }
+
+    /**
+     * Compares this checksum with that of another version of the table.
+     *
+     * @param other the checksum of the other version
+     * @return the rows inserted, updated or deleted in the other version
+     */
+    public TableDiff diff(TableChecksum other) {
+        if (other.getBucketCount() != getBucketCount()) {
+            throw new IllegalArgumentException("Cannot compare checksums with different numbers of buckets!");
+        }
+        final List<String> inserted = new ArrayList<>();
+        final List<String> updated = new ArrayList<>();
+        final List<String> deleted = new ArrayList<>();
+        int compared = 0;
+
+        final int buckets = getBucketCount();
+        final int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 1;
+        while (top > 0) {
+            final int node = stack[--top];
+            if (tree[node] == other.tree[node]) {
+                continue;
+            }
+            if (node < buckets) {
+                stack[top++] = node * 2 + 1;
+                stack[top++] = node * 2;
+                continue;
+            }
+
+            // Merge the rows of the differing bucket by key hash
+            compared++;
+            final int bucket = node - buckets;
+            int i = bucketStarts[bucket];
+            int j = other.bucketStarts[bucket];
+            final int iEnd = bucketStarts[bucket + 1];
+            final int jEnd = other.bucketStarts[bucket + 1];
+            while (i < iEnd || j < jEnd) {
+                final int cmp = (i == iEnd) ? 1 : (j == jEnd) ? -1
+                        : Long.compareUnsigned(rows[i].keyHash, other.rows[j].keyHash);
+                if (cmp < 0) {
+                    deleted.add(rows[i++].key);
+                } else if (cmp > 0) {
+                    inserted.add(other.rows[j++].key);
+                } else {
+                    final long keyHash = rows[i].keyHash;
+                    final int iRunEnd = runEnd(rows, i, iEnd, keyHash);
+                    final int jRunEnd = runEnd(other.rows, j, jEnd, keyHash);
+                    diffRun(other, i, iRunEnd, j, jRunEnd, inserted, updated, deleted);
+                    i = iRunEnd;
+                    j = jRunEnd;
+                }
+            }
+        }
+        return new TableDiff(inserted, updated, deleted, compared);
+    }
+
+    /**
+     * Compares the rows sharing a key in both versions, which are sorted by content hash.
+     * Rows with equal content are unchanged, and the rest are paired up as updated, with
+     * any left over deleted or inserted.
+     */
+    private void diffRun(TableChecksum other, int i, int iEnd, int j, int jEnd,
+                         List<String> inserted, List<String> updated, List<String> deleted) {
+        final List<String> removed = new ArrayList<>();
+        final List<String> added = new ArrayList<>();
+        while (i < iEnd || j < jEnd) {
+            final int cmp = (i == iEnd) ? 1 : (j == jEnd) ? -1
+                    : Long.compareUnsigned(rows[i].rowHash, other.rows[j].rowHash);
+            if (cmp < 0) {
+                removed.add(rows[i++].key);
+            } else if (cmp > 0) {
+                added.add(other.rows[j++].key);
+            } else {
+                i++;
+                j++;
+            }
+        }
+        final int paired = Math.min(removed.size(), added.size());
+        updated.addAll(removed.subList(0, paired));
+        deleted.addAll(removed.subList(paired, removed.size()));
+        inserted.addAll(added.subList(paired, added.size()));
+    }
+
+    private static int runEnd(Row[] rows, int start, int end, long keyHash) {
+        int i = start;
+        while (i < end && rows[i].keyHash == keyHash) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Hashes the current row of a cursor, whose first columns are the key columns.
+     *
+     * @param c the cursor positioned on the row
+     * @param keyCount the number of key columns
+     * @param columnCount the number of columns
+     * @return the hashed row
+     */
+    static Row hashRow(ResultSet c, int keyCount, int columnCount) throws SQLException {
+        final StringBuilder key = new StringBuilder();
+        long keyHash = 0;
+        long rowHash = 0;
+        for (int col = 1; col <= columnCount; col++) {
+            final Object value = c.getObject(col);
+            if (col <= keyCount) {
+                keyHash = hashValue(keyHash, value);
+                key.append((col > 1) ? ", " : "").append(value instanceof byte[] ? "BLOB" : String.valueOf(value));
+            } else {
+                rowHash = hashValue(rowHash, value);
+            }
+        }
+        return new Row(key.toString(), mix(keyHash), mix(rowHash));
+    }
+
+    /**
+     * Combines a value into a hash, distinguishing the types SQLite stores.
+     *
+     * @param h the hash so far
+     * @param value the value
+     * @return the combined hash
+     */
+    static long hashValue(long h, Object value) {
+        if (value == null) {
+            return combine(h, 0);
+        } else if (value instanceof Double || value instanceof Float) {
+            return combine(combine(h, 2), Double.doubleToLongBits(((Number)value).doubleValue()));
+        } else if (value instanceof Number) {
+            return combine(combine(h, 1), ((Number)value).longValue());
+        } else if (value instanceof byte[]) {
+            return hashBytes(combine(h, 4), (byte[])value);
+        }
+        final String s = value.toString();
+        h = combine(combine(h, 3), s.length());
+        for (int i = 0; i < s.length(); i += 4) {
+            long packed = 0;
+            for (int k = i; k < Math.min(i + 4, s.length()); k++) {
+                packed = (packed << 16) | s.charAt(k);
+            }
+            h = combine(h, packed);
+        }
+        return h;
+    }
+
+    private static long hashBytes(long h, byte[] bytes) {
+        h = combine(h, bytes.length);
+        for (int i = 0; i < bytes.length; i += 8) {
+            long packed = 0;
+            for (int k = i; k < Math.min(i + 8, bytes.length); k++) {
+                packed = (packed << 8) | (bytes[k] & 0xff);
+            }
+            h = combine(h, packed);
+        }
+        return h;
+    }
+
+    static long combine(long h, long x) {
+        return mix(h * 0x9E3779B97F4A7C15L + x);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int bucketOf(long keyHash, int shift) {
+        return (shift == 64) ? 0 : (int)(keyHash >>> shift);
+    }
+
+
+    /**
+     * A hashed row of a table.
+     */
+    static final class Row {
+        final String key;
+        final long keyHash;
+        final long rowHash;
+
+
+        Row(String key, long keyHash, long rowHash) {
+            this.key = key;
+            this.keyHash = keyHash;
+            this.rowHash = rowHash;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reports the rows that differ between two versions of a table, by key.
+ *
+ * @see TableChecksum#diff(TableChecksum)
+ *
+ * @author Tyler Suehr
+ */
+public final class TableDiff {
+    private final List<String> inserted;
+    private final List<String> updated;
+    private final List<String> deleted;
+    private final int comparedBuckets;
+
+
+    TableDiff(List<String> inserted, List<String> updated, List<String> deleted, int comparedBuckets) {
+        this.inserted = Collections.unmodifiableList(inserted);
+        this.updated = Collections.unmodifiableList(updated);
+        this.deleted = Collections.unmodifiableList(deleted);
+        this.comparedBuckets = comparedBuckets;
+    }
+
+    /**
+     * Gets the keys of rows only in the other version of the table.
+     * @return the inserted keys
+     */
+    public List<String> getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Gets the keys of rows in both versions of the table, but with different content.
+     * @return the updated keys
+     */
+    public List<String> getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Gets the keys of rows only in this version of the table.
+     * @return the deleted keys
+     */
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Gets the number of buckets whose rows had to be compared, because their hashes differed.
+     * @return the number of compared buckets
+     */
+    public int getComparedBuckets() {
+        return comparedBuckets;
+    }
+
+    /**
+     * Determines if both versions of the table have exactly the same rows.
+     * @return true if nothing differs, otherwise false
+     */
+    public boolean isEmpty() {
+        return inserted.isEmpty() && updated.isEmpty() && deleted.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Inserted " + inserted + ", updated " + updated + ", deleted " + deleted;
+    }
+}
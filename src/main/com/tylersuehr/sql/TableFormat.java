@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Formats that tables can be exported to and imported from, one row at a time.
+ *
+ * @see SQLiteDatabase#exportTable(String, Writer, TableFormat)
+ * @see SQLiteDatabase#importTable(String, Reader, TableFormat)
+ *
+ * @author Tyler Suehr
+ */
+public enum TableFormat {
+    /**
+     * Comma-separated values, starting with a record of the column names.
+     * Empty unquoted fields are NULL, and all other values are text.
+     */
+    CSV {
+        @Override
+        void writeHeader(Writer out, String[] columns) throws IOException {
+            CsvCodec.writeRecord(out, columns);
+        }
+
+        @Override
+        void writeRow(Writer out, String[] columns, Object[] values) throws IOException {
+            CsvCodec.writeRecord(out, values);
+        }
+
+        @Override
+        RowReader reader(Reader in) throws IOException {
+            final CsvCodec csv = new CsvCodec(in);
+            final List<String> columns = csv.readRecord();
+            return () -> {
+                final List<String> record = csv.readRecord();
+                if (record == null) {
+                    return null;
+                }
+                if (record.size() != columns.size()) {
+                    throw new IOException("Expected " + columns.size() + " fields, but found " + record.size() + "!");
+                }
+                final ContentValues values = new ContentValues(columns.size());
+                for (int i = 0; i < columns.size(); i++) {
+                    values.put(columns.get(i), record.get(i));
+                }
+                return values;
+            };
+        }
+    },
+
+    /**
+     * Newline-delimited JSON, with one object per row keyed by column name.
+     * Numbers keep their type, and rows may omit columns to use their default.
+     */
+    NDJSON {
+        @Override
+        void writeHeader(Writer out, String[] columns) {}
+
+        @Override
+        void writeRow(Writer out, String[] columns, Object[] values) throws IOException {
+            NdjsonCodec.writeRow(out, columns, values);
+        }
+
+        @Override
+        RowReader reader(Reader in) {
+            return new NdjsonCodec(in)::readRow;
+        }
+    };
+
+
+    /**
+     * Writes anything that comes before the rows.
+     *
+     * @param out the writer to write to
+     * @param columns the names of the columns
+     */
+    abstract void writeHeader(Writer out, String[] columns) throws IOException;
+
+    /**
+     * Writes a single row.
+     *
+     * @param out the writer to write to
+     * @param columns the names of the columns
+     * @param values the values of the row
+     */
+    abstract void writeRow(Writer out, String[] columns, Object[] values) throws IOException;
+
+    /**
+     * Creates a reader for rows in this format.
+     * @param in the reader to read from
+     */
+    abstract RowReader reader(Reader in) throws IOException;
+
+
+    /**
+     * Reads rows one at a time.
+     */
+    interface RowReader {
+        /**
+         * Reads the next row.
+         * @return the values of the row, or null at the end of input
+         */
+        ContentValues read() throws IOException;
+    }
+}
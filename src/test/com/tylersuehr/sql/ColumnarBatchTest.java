@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import org.junit.Assert;
+import org.junit.Test;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Tyler Suehr
+ */
+public class ColumnarBatchTest {
+    @Test
+    public void testDictionaryCodesAreStable() {
+        ColumnarBatch batch = new ColumnarBatch(
+                new String[] { "hymn_type" }, new ColumnarBatch.Type[] { ColumnarBatch.Type.TEXT }, 10);
+
+        int h = batch.encode(0, "h");
+        int ch = batch.encode(0, "ch");
+        Assert.assertEquals(0, h);
+        Assert.assertEquals(1, ch);
+        Assert.assertEquals(h, batch.encode(0, "h"));
+        Assert.assertEquals(2, batch.getDictionarySize(0));
+        Assert.assertEquals("ch", batch.decode(0, ch));
+        Assert.assertNull(batch.decode(0, -1));
+    }
+
+    @Test
+    public void testColumnTypes() {
+        Assert.assertEquals(ColumnarBatch.Type.LONG, ColumnarBatch.toType(Types.INTEGER));
+        Assert.assertEquals(ColumnarBatch.Type.DOUBLE, ColumnarBatch.toType(Types.REAL));
+        Assert.assertEquals(ColumnarBatch.Type.TEXT, ColumnarBatch.toType(Types.VARCHAR));
+        Assert.assertEquals(ColumnarBatch.Type.TEXT, ColumnarBatch.toType(Types.NULL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongColumnType() {
+        ColumnarBatch batch = new ColumnarBatch(
+                new String[] { "id" }, new ColumnarBatch.Type[] { ColumnarBatch.Type.LONG }, 10);
+        batch.getCodes(0);
+    }
+
+    @Test
+    public void testColumnIndex() {
+        ColumnarBatch batch = new ColumnarBatch(
+                new String[] { "id", "hymn_type" },
+                new ColumnarBatch.Type[] { ColumnarBatch.Type.LONG, ColumnarBatch.Type.TEXT }, 10);
+        Assert.assertEquals(1, batch.getColumnIndex("HYMN_TYPE"));
+        Assert.assertEquals(-1, batch.getColumnIndex("missing"));
+    }
+
+    @Test
+    public void testQueryColumnarWidensMixedTypes() {
+        SQLiteDatabase db = new SQLiteDatabase(":memory:");
+        try {
+            db.execSql("CREATE TABLE [songs] ([number] INTEGER, [score] INTEGER, [title] TEXT);");
+            db.execSql("INSERT INTO [songs] VALUES (1, 1, 'a'), (2, 3, NULL), (3, 2.5, 'c'), (4, 'hello', 'd');");
+
+            final List<String> types = new ArrayList<>();
+            final List<String> values = new ArrayList<>();
+            db.queryColumnar("SELECT [number], [score], [title] FROM [songs] ORDER BY [number];", 2, batch -> {
+                types.add(batch.getType(0) + " " + batch.getType(1));
+                for (int row = 0; row < batch.size(); row++) {
+                    values.add(batch.getString(1, row));
+                }
+                if (batch.getType(1) == ColumnarBatch.Type.LONG) {
+                    Assert.assertEquals(3L, batch.getLongs(1)[1]);
+                }
+                if (batch.getType(1) == ColumnarBatch.Type.TEXT) {
+                    Assert.assertEquals("hello", batch.decode(1, batch.getCodes(1)[1]));
+                }
+            });
+
+            Assert.assertEquals("[LONG LONG, LONG TEXT]", types.toString());
+            Assert.assertEquals("[1, 3, 2.5, hello]", values.toString());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void testQueryColumnarWidensLongsToDoubles() {
+        SQLiteDatabase db = new SQLiteDatabase(":memory:");
+        try {
+            db.execSql("CREATE TABLE [songs] ([score]);");
+            db.execSql("INSERT INTO [songs] VALUES (1), (NULL), (2.5);");
+
+            final List<ColumnarBatch.Type> types = new ArrayList<>();
+            db.queryColumnar("SELECT [score] FROM [songs] ORDER BY rowid;", 10, batch -> {
+                types.add(batch.getType(0));
+                Assert.assertEquals(3, batch.size());
+                Assert.assertEquals(1.0, batch.getDoubles(0)[0], 0);
+                Assert.assertTrue(batch.isNull(0, 1));
+                Assert.assertEquals(2.5, batch.getDoubles(0)[2], 0);
+            });
+
+            Assert.assertEquals(1, types.size());
+            Assert.assertEquals(ColumnarBatch.Type.DOUBLE, types.get(0));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void testQueryColumnarInfersTypeAfterLeadingNull() {
+        SQLiteDatabase db = new SQLiteDatabase(":memory:");
+        try {
+            db.execSql("CREATE TABLE [songs] ([number] INTEGER, [score], [note]);");
+            db.execSql("INSERT INTO [songs] VALUES (1, NULL, NULL), (2, 5, 'a'), (3, 7, 'b');");
+
+            final List<String> types = new ArrayList<>();
+            final List<Long> doubled = new ArrayList<>();
+            db.queryColumnar("SELECT [score], [score] * 2, [note] FROM [songs] ORDER BY [number];", 2, batch -> {
+                types.add(batch.getType(0) + " " + batch.getType(1) + " " + batch.getType(2));
+                for (int row = 0; row < batch.size(); row++) {
+                    doubled.add(batch.isNull(1, row) ? null : batch.getLongs(1)[row]);
+                }
+            });
+
+            Assert.assertEquals("[LONG LONG TEXT, LONG LONG TEXT]", types.toString());
+            Assert.assertEquals(Arrays.asList(null, 10L, 14L), doubled);
+        } finally {
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author Tyler Suehr
+ */
+public class QueryPublisherTest {
+    private SQLiteDatabase db;
+
+
+    @Before
+    public void setUp() {
+        this.db = new SQLiteDatabase(":memory:");
+        this.db.execSql("CREATE TABLE [songs] ([number] INTEGER);");
+        this.db.execSql("INSERT INTO [songs] VALUES (1), (2), (3), (4), (5);");
+    }
+
+    @After
+    public void tearDown() {
+        this.db.close();
+    }
+
+    @Test
+    public void testRequestLimitsRowsEmitted() {
+        Recorder recorder = new Recorder();
+        db.queryPublisher("SELECT [number] FROM [songs] ORDER BY [number];", c -> c.getLong(1)).subscribe(recorder);
+        Assert.assertTrue(recorder.rows.isEmpty());
+
+        recorder.subscription.request(2);
+        Assert.assertEquals("[1, 2]", recorder.rows.toString());
+        Assert.assertFalse(recorder.completed);
+
+        recorder.subscription.request(2);
+        Assert.assertEquals("[1, 2, 3, 4]", recorder.rows.toString());
+        Assert.assertFalse(recorder.completed);
+
+        recorder.subscription.request(10);
+        Assert.assertEquals("[1, 2, 3, 4, 5]", recorder.rows.toString());
+        Assert.assertTrue(recorder.completed);
+        Assert.assertNull(recorder.error);
+        Assert.assertEquals(1, db.getReferenceCount());
+    }
+
+    @Test
+    public void testCancelClosesCursorAndReleasesDatabase() throws Exception {
+        AtomicReference<ResultSet> cursor = new AtomicReference<>();
+        Recorder recorder = new Recorder();
+        db.queryPublisher("SELECT [number] FROM [songs] ORDER BY [number];", c -> {
+            cursor.set(c);
+            return c.getLong(1);
+        }).subscribe(recorder);
+        Assert.assertEquals(2, db.getReferenceCount());
+
+        recorder.subscription.request(2);
+        recorder.subscription.cancel();
+        recorder.subscription.request(2);
+
+        Assert.assertEquals("[1, 2]", recorder.rows.toString());
+        Assert.assertTrue(cursor.get().isClosed());
+        Assert.assertEquals(1, db.getReferenceCount());
+        Assert.assertFalse(recorder.completed);
+        Assert.assertNull(recorder.error);
+    }
+
+    @Test
+    public void testSqlErrorIsSignalled() {
+        Recorder recorder = new Recorder();
+        db.queryPublisher("SELECT * FROM [missing];", c -> c.getLong(1)).subscribe(recorder);
+
+        Assert.assertNotNull(recorder.subscription);
+        Assert.assertNotNull(recorder.error);
+        Assert.assertTrue(recorder.rows.isEmpty());
+        Assert.assertFalse(recorder.completed);
+        Assert.assertEquals(1, db.getReferenceCount());
+    }
+
+
+    private static final class Recorder implements Flow.Subscriber<Long> {
+        private final List<Long> rows = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Long item) {
+            this.rows.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import org.junit.Assert;
+import org.junit.Test;
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * @author Tyler Suehr
+ */
+public class RetryPolicyTest {
+    @Test
+    public void testBackoffDoublesUpToMax() {
+        RetryPolicy policy = new RetryPolicy(10, 10, 100);
+        Assert.assertEquals(10, policy.getBackoff(0));
+        Assert.assertEquals(20, policy.getBackoff(1));
+        Assert.assertEquals(80, policy.getBackoff(3));
+        Assert.assertEquals(100, policy.getBackoff(4));
+        Assert.assertEquals(100, policy.getBackoff(70));
+    }
+
+    @Test
+    public void testDelayIsJitteredWithinBackoff() {
+        RetryPolicy policy = new RetryPolicy(10, 10, 1000);
+        Random random = new Random(42);
+        for (int retry = 0; retry < 8; retry++) {
+            for (int i = 0; i < 100; i++) {
+                long delay = policy.getDelay(retry, random);
+                Assert.assertTrue(delay >= 0 && delay <= policy.getBackoff(retry));
+            }
+        }
+    }
+
+    @Test
+    public void testLockedErrorsAreRetryable() {
+        Assert.assertTrue(RetryPolicy.isRetryable(new SQLException("database is locked")));
+        Assert.assertTrue(RetryPolicy.isRetryable(new SQLException("busy", null, 5)));
+        Assert.assertTrue(RetryPolicy.isRetryable(new SQLException("[SQLITE_LOCKED]  A table in the database is locked")));
+        Assert.assertFalse(RetryPolicy.isRetryable(new SQLException("no such table: hymns")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequiresAnAttempt() {
+        new RetryPolicy(0, 10, 100);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * @author Tyler Suehr
+ */
+public class RowMapperProcessorTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGeneratesMapper() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        String source = "package models;\n"
+                + "import com.tylersuehr.sql.*;\n"
+                + "@Entity public class Song {\n"
+                + "    @Column(\"song_id\") public int id;\n"
+                + "    @Column private String title;\n"
+                + "    @Column public Long views;\n"
+                + "    public String lyrics;\n"
+                + "    public String getTitle() { return title; }\n"
+                + "    public void setTitle(String title) { this.title = title; }\n"
+                + "}\n";
+
+        Assert.assertEquals("[]", compile(dir, "Song", source).getDiagnostics().toString());
+
+        String mapper = new String(Files.readAllBytes(dir.resolve("models/SongMapper.java")), StandardCharsets.UTF_8);
+        Assert.assertTrue(mapper.contains("COLUMNS = { \"song_id\", \"title\", \"views\" };"));
+        Assert.assertFalse(mapper.contains("lyrics"));
+
+        SQLiteDatabase db = new SQLiteDatabase(":memory:");
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, getClass().getClassLoader())) {
+            Class<?> song = loader.loadClass("models.Song");
+            RowMapper<Object> songMapper = (RowMapper<Object>)loader.loadClass("models.SongMapper")
+                    .getDeclaredConstructor().newInstance();
+
+            db.execSql("CREATE TABLE [songs] ([title] TEXT, [views] INTEGER, [song_id] INTEGER);");
+            db.execSql("INSERT INTO [songs] VALUES ('Hymn 1', 12, 1), ('Hymn 2', NULL, 2);");
+            ResultSet c = db.rawQuery("SELECT * FROM [songs] ORDER BY [song_id];");
+
+            Assert.assertTrue(c.next());
+            Object first = songMapper.map(c);
+            Assert.assertEquals(1, song.getField("id").get(first));
+            Assert.assertEquals("Hymn 1", song.getMethod("getTitle").invoke(first));
+            Assert.assertEquals(12L, song.getField("views").get(first));
+
+            Assert.assertTrue(c.next());
+            Object second = songMapper.map(c);
+            Assert.assertEquals(2, song.getField("id").get(second));
+            Assert.assertNull(song.getField("views").get(second));
+
+            ContentValues values = (ContentValues)songMapper.getClass().getMethod("toContentValues", song)
+                    .invoke(songMapper, first);
+            Assert.assertEquals("Hymn 1", values.get("title"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void testRejectsUnsupportedField() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        String source = "import com.tylersuehr.sql.*;\n"
+                + "@Entity public class Hymn {\n"
+                + "    @Column public java.util.Date created;\n"
+                + "}\n";
+
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(dir, "Hymn", source);
+        Assert.assertEquals(1, diagnostics.getDiagnostics().size());
+        Assert.assertTrue(diagnostics.getDiagnostics().get(0).getMessage(null).contains("java.util.Date"));
+        Assert.assertFalse(Files.exists(dir.resolve("HymnMapper.java")));
+    }
+
+    private static DiagnosticCollector<JavaFileObject> compile(Path dir, String name, String source) throws Exception {
+        Path file = dir.resolve(name + ".java");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            compiler.getTask(null, files, diagnostics,
+                    Arrays.asList("-Xlint:processing", "-processor", RowMapperProcessor.class.getName(),
+                            "-s", dir.toString(), "-d", dir.toString(), "-cp", System.getProperty("java.class.path")),
+                    null, files.getJavaFileObjectsFromFiles(Collections.singletonList(file.toFile()))).call();
+        }
+        return diagnostics;
+    }
+}
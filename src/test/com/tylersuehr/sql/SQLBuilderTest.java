@@ -73,6 +73,22 @@ public class SQLBuilderTest {
         Assert.assertEquals(sql, expected);
     }
 
+    @Test
+    public void testCompiledInsertStatement() {
+        final ContentValues values = new ContentValues();
+        values.put("name", "Tyler");
+        values.put("username", "tyler123");
+        values.put("password", "tyler123");
+
+        final String table = "users";
+
+        SQLBuilder builder = new SQLBuilder();
+        String sql = builder.createInsertStatement(table, values.getKeys());
+        String expected = "INSERT INTO [users] ([name],[username],[password]) VALUES (?,?,?);";
+
+        Assert.assertEquals(sql, expected);
+    }
+
     @Test
     public void testUpdateStatement() {
         final ContentValues values = new ContentValues();
@@ -90,6 +106,90 @@ public class SQLBuilderTest {
         Assert.assertEquals(sql, expected);
     }
 
+    @Test
+    public void testJsonUpdateStatement() {
+        final String table = "song_data";
+        final String where = "[id]=3";
+
+        String sql = SQLBuilder.createJsonUpdate(table, "languages", "json_set", where);
+        String expected = "UPDATE [song_data] SET [languages]=json_set([languages],?,json(?)) WHERE [id]=3;";
+        Assert.assertEquals(sql, expected);
+
+        sql = SQLBuilder.createJsonUpdate(table, "languages", "json_remove", where);
+        expected = "UPDATE [song_data] SET [languages]=json_remove([languages],?) WHERE [id]=3;";
+        Assert.assertEquals(sql, expected);
+    }
+
+    @Test
+    public void testJsonAppendStatement() {
+        String sql = SQLBuilder.createJsonAppend("song_data", "languages", "[id]=3");
+        String expected = "UPDATE [song_data] SET [languages]=json_insert([languages],?||'['||json_array_length([languages],?)||']',json(?))"
+                + " WHERE json_type([languages],?)='array' AND ([id]=3);";
+
+        Assert.assertEquals(sql, expected);
+    }
+
+    @Test
+    public void testJsonEachQuery() {
+        String sql = SQLBuilder.createJsonEach("song_data", "languages", null);
+        String expected = "SELECT [song_data].*,json_each.[key],json_each.[value] FROM [song_data],json_each([song_data].[languages],?);";
+
+        Assert.assertEquals(sql, expected);
+    }
+
+    @Test
+    public void testSchemaQuery() {
+        String sql = SQLBuilder.createSchemaQuery("h4a", "hymns", "[_id]='C1'", null, "1");
+        String expected = "SELECT * FROM [h4a].[hymns] WHERE [_id]='C1' LIMIT 1;";
+
+        Assert.assertEquals(sql, expected);
+    }
+
+    @Test
+    public void testAttachAndDetach() {
+        Assert.assertEquals(SQLBuilder.createAttach("h4a"), "ATTACH DATABASE ? AS [h4a];");
+        Assert.assertEquals(SQLBuilder.createDetach("h4a"), "DETACH DATABASE [h4a];");
+    }
+
+    @Test
+    public void testAnalyze() {
+        Assert.assertEquals(SQLBuilder.createAnalyze("song_data"), "ANALYZE [song_data];");
+    }
+
+    @Test
+    public void testChecksumQuery() {
+        String sql = SQLBuilder.createChecksumQuery("song_data", new String[] { "hymn_type", "hymn_number" }, true);
+        String expected = "SELECT [hymn_type],[hymn_number],* FROM [song_data] WHERE rowid BETWEEN ? AND ?;";
+
+        Assert.assertEquals(sql, expected);
+    }
+
+    @Test
+    public void testExpressionIndex() {
+        final String languagePath = SQLBuilder.createJsonExtract("languages", "$.data[0].path");
+
+        String sql = SQLBuilder.createIndex("song_language", "song_data", false, "[hymn_type]", languagePath);
+        String expected = "CREATE INDEX IF NOT EXISTS [song_language] ON [song_data] ([hymn_type],json_extract([languages],'$.data[0].path'));";
+
+        Assert.assertEquals(sql, expected);
+    }
+
+    @Test
+    public void testJsonExtractEscapesPath() {
+        String sql = SQLBuilder.createJsonExtract("languages", "$.it's");
+        String expected = "json_extract([languages],'$.it''s')";
+
+        Assert.assertEquals(sql, expected);
+    }
+
+    @Test
+    public void testGeneratedColumn() {
+        String sql = SQLBuilder.createAddGeneratedColumn("song_data", "languages_name", "TEXT", "json_extract([languages],'$.name')");
+        String expected = "ALTER TABLE [song_data] ADD COLUMN [languages_name] TEXT GENERATED ALWAYS AS (json_extract([languages],'$.name')) VIRTUAL;";
+
+        Assert.assertEquals(sql, expected);
+    }
+
     @Test
     public void testDeleteStatement() {
         final String table = "users";
@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Tyler Suehr
+ */
+public class SQLiteCloseableTest {
+    @Test
+    public void testCleansUpOnceAfterLastReference() {
+        Counter counter = new Counter();
+        counter.acquireReference();
+        counter.close();
+        counter.close();
+        Assert.assertEquals(0, counter.cleanups.get());
+
+        counter.releaseReference();
+        Assert.assertEquals(1, counter.cleanups.get());
+        Assert.assertFalse(counter.hasReference());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCannotAcquireAfterClose() {
+        Counter counter = new Counter();
+        counter.acquireReference();
+        counter.close();
+        counter.acquireReference();
+    }
+
+    @Test
+    public void testConcurrentReferences() throws InterruptedException {
+        Counter counter = new Counter();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    counter.acquireReference();
+                    counter.releaseReference();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(0, counter.cleanups.get());
+
+        counter.close();
+        Assert.assertEquals(1, counter.cleanups.get());
+    }
+
+
+    private static final class Counter extends SQLiteCloseable {
+        private final AtomicInteger cleanups = new AtomicInteger();
+
+        @Override
+        protected void onAllReferencesReleased() {
+            this.cleanups.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Tyler Suehr
+ */
+public class TableChecksumTest {
+    @Test
+    public void testRootIgnoresRowOrder() {
+        List<TableChecksum.Row> rows = createRows(1000);
+        TableChecksum checksum = new TableChecksum("song_data", 64, Collections.singletonList(rows));
+
+        List<TableChecksum.Row> shuffled = new ArrayList<>(rows);
+        Collections.shuffle(shuffled);
+        TableChecksum split = new TableChecksum("song_data", 64,
+                Arrays.asList(shuffled.subList(0, 300), shuffled.subList(300, 1000)));
+
+        Assert.assertEquals(checksum.getRoot(), split.getRoot());
+        Assert.assertTrue(checksum.diff(split).isEmpty());
+        Assert.assertEquals(0, checksum.diff(split).getComparedBuckets());
+    }
+
+    @Test
+    public void testDiffOnlyComparesChangedBuckets() {
+        List<TableChecksum.Row> rows = createRows(1000);
+        TableChecksum before = new TableChecksum("song_data", 64, Collections.singletonList(rows));
+
+        List<TableChecksum.Row> changed = new ArrayList<>(rows);
+        changed.set(10, createRow("h/10", "Changed"));
+        changed.remove(20);
+        changed.add(createRow("ns/1", "New"));
+        TableChecksum after = new TableChecksum("song_data", 64, Collections.singletonList(changed));
+
+        TableDiff diff = before.diff(after);
+        Assert.assertEquals(Collections.singletonList("ns/1"), diff.getInserted());
+        Assert.assertEquals(Collections.singletonList("h/10"), diff.getUpdated());
+        Assert.assertEquals(Collections.singletonList("h/20"), diff.getDeleted());
+        Assert.assertTrue(diff.getComparedBuckets() <= 3);
+    }
+
+    @Test
+    public void testDuplicateKeysIgnoreRowOrder() {
+        TableChecksum.Row plain = createRow("ch, 1", "");
+        TableChecksum.Row simplified = createRow("ch, 1", "?gb=1");
+        TableChecksum checksum = new TableChecksum("song_data", 64,
+                Collections.singletonList(Arrays.asList(plain, simplified)));
+        TableChecksum reversed = new TableChecksum("song_data", 64,
+                Collections.singletonList(Arrays.asList(simplified, plain)));
+
+        Assert.assertEquals(checksum.getRoot(), reversed.getRoot());
+        Assert.assertTrue(checksum.diff(reversed).isEmpty());
+    }
+
+    @Test
+    public void testDiffMatchesDuplicateKeysByContent() {
+        TableChecksum before = new TableChecksum("song_data", 64, Collections.singletonList(Arrays.asList(
+                createRow("ch, 1", ""), createRow("ch, 1", "?gb=1"), createRow("ch, 2", ""))));
+        TableChecksum after = new TableChecksum("song_data", 64, Collections.singletonList(Arrays.asList(
+                createRow("ch, 1", "?gb=2"), createRow("ch, 1", ""), createRow("ch, 2", ""), createRow("ch, 2", "?gb=1"))));
+
+        TableDiff diff = before.diff(after);
+        Assert.assertEquals(Collections.singletonList("ch, 2"), diff.getInserted());
+        Assert.assertEquals(Collections.singletonList("ch, 1"), diff.getUpdated());
+        Assert.assertTrue(diff.getDeleted().isEmpty());
+    }
+
+    @Test
+    public void testDiffOfTablesWithDuplicateKeys() {
+        SQLiteDatabase db = new SQLiteDatabase(":memory:");
+        SQLiteDatabase other = new SQLiteDatabase(":memory:");
+        try {
+            db.execSql("CREATE TABLE song_data (hymn_type TEXT, hymn_number TEXT, query_params TEXT)");
+            db.execSql("INSERT INTO song_data VALUES ('ch', '1', ''), ('ch', '1', '?gb=1')");
+            other.execSql("CREATE TABLE song_data (hymn_type TEXT, hymn_number TEXT, query_params TEXT)");
+            other.execSql("INSERT INTO song_data VALUES ('ch', '1', '?gb=1'), ('ch', '1', '')");
+
+            TableChecksum checksum = db.checksum("song_data", "hymn_type", "hymn_number");
+            TableChecksum otherChecksum = other.checksum("song_data", "hymn_type", "hymn_number");
+            Assert.assertEquals(checksum.getRoot(), otherChecksum.getRoot());
+            Assert.assertTrue(db.diff(other, "song_data", "hymn_type", "hymn_number").isEmpty());
+        } finally {
+            db.close();
+            other.close();
+        }
+    }
+
+    @Test
+    public void testValuesHashByType() {
+        Assert.assertNotEquals(TableChecksum.hashValue(0, 2L), TableChecksum.hashValue(0, 2.0));
+        Assert.assertNotEquals(TableChecksum.hashValue(0, 2L), TableChecksum.hashValue(0, "2"));
+        Assert.assertNotEquals(TableChecksum.hashValue(0, null), TableChecksum.hashValue(0, ""));
+        Assert.assertEquals(TableChecksum.hashValue(0, 2), TableChecksum.hashValue(0, 2L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBucketsMustBePowerOfTwo() {
+        new TableChecksum("song_data", 100, Collections.emptyList());
+    }
+
+    private static List<TableChecksum.Row> createRows(int count) {
+        List<TableChecksum.Row> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(createRow("h/" + i, "Song " + i));
+        }
+        return rows;
+    }
+
+    private static TableChecksum.Row createRow(String key, String title) {
+        return new TableChecksum.Row(key, TableChecksum.hashValue(0, key), TableChecksum.hashValue(0, title));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) Tyler Suehr 2019.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.tylersuehr.sql;
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * @author Tyler Suehr
+ */
+public class TableFormatTest {
+    private static final String[] COLUMNS = { "hymn_type", "hymn_number", "song_title", "languages" };
+    private static final Object[] VALUES = { "h", 43, "Praise, \"the\" Lord\r\nagain", null };
+
+
+    @Test
+    public void testCsvRoundTrip() throws IOException {
+        StringWriter out = new StringWriter();
+        TableFormat.CSV.writeHeader(out, COLUMNS);
+        TableFormat.CSV.writeRow(out, COLUMNS, VALUES);
+        TableFormat.CSV.writeRow(out, COLUMNS, new Object[] { "", 1.5, null, "x" });
+
+        Assert.assertEquals("hymn_type,hymn_number,song_title,languages\r\n"
+                + "h,43,\"Praise, \"\"the\"\" Lord\r\nagain\",\r\n"
+                + "\"\",1.5,,x\r\n", out.toString());
+
+        TableFormat.RowReader reader = TableFormat.CSV.reader(new StringReader(out.toString()));
+        ContentValues row = reader.read();
+        Assert.assertEquals("h", row.get("hymn_type"));
+        Assert.assertEquals("43", row.get("hymn_number"));
+        Assert.assertEquals(VALUES[2], row.get("song_title"));
+        Assert.assertNull(row.get("languages"));
+
+        row = reader.read();
+        Assert.assertEquals("", row.get("hymn_type"));
+        Assert.assertNull(row.get("song_title"));
+        Assert.assertNull(reader.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCsvRejectsMissingFields() throws IOException {
+        TableFormat.RowReader reader = TableFormat.CSV.reader(new StringReader("a,b\n1\n"));
+        reader.read();
+    }
+
+    @Test
+    public void testNdjsonRoundTrip() throws IOException {
+        StringWriter out = new StringWriter();
+        TableFormat.NDJSON.writeRow(out, COLUMNS, VALUES);
+
+        Assert.assertEquals("{\"hymn_type\":\"h\",\"hymn_number\":43,"
+                + "\"song_title\":\"Praise, \\\"the\\\" Lord\\r\\nagain\",\"languages\":null}\n", out.toString());
+
+        TableFormat.RowReader reader = TableFormat.NDJSON.reader(new StringReader(out.toString()));
+        ContentValues row = reader.read();
+        Assert.assertEquals("h", row.get("hymn_type"));
+        Assert.assertEquals(43L, row.get("hymn_number"));
+        Assert.assertEquals(VALUES[2], row.get("song_title"));
+        Assert.assertNull(row.get("languages"));
+        Assert.assertNull(reader.read());
+    }
+
+    @Test
+    public void testNdjsonKeepsNestedJsonAsText() throws IOException {
+        String line = "{ \"languages\": {\"data\": [{\"value\": \"}\"}]}, \"n\": 1e2, \"ok\": true }\n\n";
+        TableFormat.RowReader reader = TableFormat.NDJSON.reader(new StringReader(line));
+
+        ContentValues row = reader.read();
+        Assert.assertEquals("{\"data\": [{\"value\": \"}\"}]}", row.get("languages"));
+        Assert.assertEquals(100.0, row.get("n"));
+        Assert.assertEquals(true, row.get("ok"));
+        Assert.assertNull(reader.read());
+    }
+}